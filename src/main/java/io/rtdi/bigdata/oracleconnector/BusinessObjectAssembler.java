@@ -0,0 +1,175 @@
+package io.rtdi.bigdata.oracleconnector;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.avro.Schema;
+import org.apache.avro.Schema.Field;
+import org.apache.avro.SchemaBuilderException;
+
+import io.rtdi.bigdata.connector.pipeline.foundation.avro.JexlGenericData.JexlRecord;
+import io.rtdi.bigdata.connector.pipeline.foundation.utils.AvroNameEncoder;
+import io.rtdi.bigdata.kafka.avro.RowType;
+
+/**
+ * Builds the nested records of a master-detail mapping.<br>
+ * The root rows are collected into batches and for each child table a single statement reads the child rows of all
+ * root rows of the batch. Hence an order with its items is one root select plus one select per child table and batch,
+ * instead of one select per order.
+ */
+public class BusinessObjectAssembler {
+	public static final int BATCH_SIZE = 500;
+
+	private final Connection conn;
+	private final OracleTableMapping root;
+	private final OracleProducerProperties props;
+	private final RowSink sink;
+	private final List<PendingRow> pending = new ArrayList<>();
+	private final Map<OracleTableMapping, Schema> recordschemas = new HashMap<>();
+
+	/**
+	 * Receives the completed root records in the order they were added.
+	 */
+	@FunctionalInterface
+	public interface RowSink {
+		void accept(JexlRecord record, RowType rowtype) throws IOException;
+	}
+
+	/**
+	 * @param conn the connection to read the child tables with
+	 * @param root the root mapping
+	 * @param props the producer properties
+	 * @param sink where to send the completed records to
+	 * @throws SchemaBuilderException if the root schema cannot be built
+	 * @throws IOException if the schema does not contain the child arrays
+	 */
+	public BusinessObjectAssembler(Connection conn, OracleTableMapping root, OracleProducerProperties props, RowSink sink) throws SchemaBuilderException, IOException {
+		this.conn = conn;
+		this.root = root;
+		this.props = props;
+		this.sink = sink;
+		recordschemas.put(root, root.getAvroSchema());
+		for (OracleTableMapping m : root.getAllTableMappings()) {
+			if (m != root) {
+				recordschemas.put(m, getElementSchema(recordschemas.get(m.getParent()), m));
+			}
+		}
+	}
+
+	/**
+	 * @param record the converted root row
+	 * @param rowtype the row type to send it with
+	 * @param rowid the rowid of the root row, null for deleted rows
+	 * @throws IOException if sending the batch failed
+	 * @throws SQLException if reading the child tables failed
+	 */
+	public void add(JexlRecord record, RowType rowtype, String rowid) throws IOException, SQLException {
+		initArrays(record, root);
+		pending.add(new PendingRow(record, rowtype, rowid));
+		if (pending.size() >= BATCH_SIZE) {
+			flush();
+		}
+	}
+
+	/**
+	 * Read the child rows of all pending root rows and send them.
+	 *
+	 * @throws IOException if sending failed
+	 * @throws SQLException if reading the child tables failed
+	 */
+	public void flush() throws IOException, SQLException {
+		if (pending.size() == 0) {
+			return;
+		}
+		Map<OracleTableMapping, Map<String, JexlRecord>> records = new HashMap<>();
+		Map<String, JexlRecord> rootrecords = new HashMap<>();
+		List<String> rowids = new ArrayList<>();
+		for (PendingRow row : pending) {
+			if (row.rowid != null && row.rowtype != RowType.DELETE) {
+				rootrecords.put(row.rowid, row.record);
+				rowids.add(row.rowid);
+			}
+		}
+		records.put(root, rootrecords);
+		if (rowids.size() != 0) {
+			for (OracleTableMapping child : root.getAllTableMappings()) {
+				if (child != root) {
+					records.put(child, readChildren(child, rowids, records.get(child.getParent())));
+				}
+			}
+		}
+		for (PendingRow row : pending) {
+			sink.accept(row.record, row.rowtype);
+		}
+		pending.clear();
+	}
+
+	private Map<String, JexlRecord> readChildren(OracleTableMapping child, List<String> rowids, Map<String, JexlRecord> parents) throws SQLException, IOException {
+		Map<String, JexlRecord> children = new HashMap<>();
+		String sql = child.createChildSelect(rowids.size());
+		String fieldname = AvroNameEncoder.encodeName(child.getName());
+		try (PreparedStatement stmt = conn.prepareStatement(sql);) {
+			for (int i = 0; i < rowids.size(); i++) {
+				stmt.setString(i+1, rowids.get(i));
+			}
+			try (ResultSet rs = stmt.executeQuery();) {
+				RowConverter converter = new RowConverter(rs.getMetaData(), child, recordschemas.get(child), props, 2);
+				while (rs.next()) {
+					JexlRecord parent = parents.get(rs.getString(1));
+					if (parent != null) {
+						JexlRecord r = converter.convert(rs);
+						initArrays(r, child);
+						getArray(parent, fieldname).add(r);
+						children.put(rs.getString(2), r);
+					}
+				}
+			} catch (SchemaBuilderException e) {
+				throw new IOException("Converting the rows of the child table \"" + child.getOracletablename() + "\" failed", e);
+			}
+		}
+		return children;
+	}
+
+	/**
+	 * Every record gets an empty array per child table, so a parent without children is sent with empty arrays
+	 */
+	private static void initArrays(JexlRecord record, OracleTableMapping mapping) {
+		if (mapping.hasChildtables()) {
+			for (OracleTableMapping child : mapping.getChildtables()) {
+				record.put(AvroNameEncoder.encodeName(child.getName()), new ArrayList<JexlRecord>());
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<JexlRecord> getArray(JexlRecord record, String fieldname) {
+		return (List<JexlRecord>) record.get(fieldname);
+	}
+
+	private static Schema getElementSchema(Schema parentschema, OracleTableMapping child) throws IOException {
+		Field field = parentschema.getField(AvroNameEncoder.encodeName(child.getName()));
+		if (field == null) {
+			throw new IOException("The schema \"" + parentschema.getName() + "\" has no array for the child table \"" + child.getName() + "\"");
+		}
+		return RowConverter.getBaseSchema(field.schema()).getElementType();
+	}
+
+	private static class PendingRow {
+		private final JexlRecord record;
+		private final RowType rowtype;
+		private final String rowid;
+
+		private PendingRow(JexlRecord record, RowType rowtype, String rowid) {
+			this.record = record;
+			this.rowtype = rowtype;
+			this.rowid = rowid;
+		}
+	}
+}
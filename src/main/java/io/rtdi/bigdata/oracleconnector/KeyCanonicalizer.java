@@ -0,0 +1,234 @@
+package io.rtdi.bigdata.oracleconnector;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.avro.LogicalType;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilderException;
+import org.apache.avro.generic.GenericData;
+
+import io.rtdi.bigdata.connector.connectorframework.exceptions.ConnectorRuntimeException;
+import io.rtdi.bigdata.connector.pipeline.foundation.avro.JexlGenericData.JexlRecord;
+
+/**
+ * Turns the primary key values of a record into one canonical text, no matter how the values are represented.<br>
+ * The {@link RowConverter} puts the values in the Avro internal representation, but e.g. a decimal can be a ByteBuffer or a
+ * BigDecimal and a key text of the PKLOG the connector could not parse stays a text. Everything keyed by the primary key,
+ * the partition and the row hash cache, has to treat all forms of the same key the same.
+ * <ul>
+ * <li>numbers: the plain decimal representation without trailing zeros, e.g. 12.5 for the decimal 12.50 and the texts "12.50" and ".5E+001"</li>
+ * <li>dates: yyyy-MM-dd</li>
+ * <li>timestamps: yyyy-MM-dd HH:mm:ss with six fractional digits if not zero</li>
+ * <li>everything else: the text itself</li>
+ * </ul>
+ * Texts that cannot be parsed, e.g. a date in a session specific NLS format, are used as is.
+ */
+public class KeyCanonicalizer {
+	private static final String NULL_VALUE = "\u0000";
+	private static final char SEPARATOR = '\u0001';
+	private static final Pattern DATE_TEXT = Pattern.compile("(\\d{4}-\\d{2}-\\d{2})([ T](\\d{2}):(\\d{2}):(\\d{2})(\\.(\\d{1,9}))?)?");
+
+	enum Kind {
+		NUMBER,
+		/**
+		 * Avro int with logical type date, the days since 1970-01-01
+		 */
+		DATE,
+		/**
+		 * Avro long with logical type timestamp, the microseconds since 1970-01-01
+		 */
+		TIMESTAMP,
+		TEXT
+	}
+
+	private final int[] positions;
+	private final Kind[] kinds;
+	private final int[] scales;
+
+	/**
+	 * @param mapping the mapping with the primary key columns
+	 * @throws ConnectorRuntimeException if a primary key column is not part of the mapping
+	 * @throws SchemaBuilderException if the mapping's schema cannot be built
+	 */
+	public KeyCanonicalizer(OracleTableMapping mapping) throws ConnectorRuntimeException, SchemaBuilderException {
+		this.positions = mapping.getPKFieldPositions();
+		this.kinds = new Kind[positions.length];
+		this.scales = new int[positions.length];
+		List<Schema.Field> fields = mapping.getAvroSchema().getFields();
+		for (int i = 0; i < positions.length; i++) {
+			Schema schema = RowConverter.getBaseSchema(fields.get(positions[i]).schema());
+			kinds[i] = getKind(schema);
+			Object scale = schema.getObjectProp("scale");
+			scales[i] = scale instanceof Number ? ((Number) scale).intValue() : 0;
+		}
+	}
+
+	KeyCanonicalizer(int[] positions, Kind[] kinds, int[] scales) {
+		this.positions = positions;
+		this.kinds = kinds;
+		this.scales = scales;
+	}
+
+	/**
+	 * @return true if the mapping has primary key columns
+	 */
+	public boolean hasKey() {
+		return positions.length != 0;
+	}
+
+	/**
+	 * @param record the record
+	 * @return the canonical text of all primary key values
+	 */
+	public String getKey(JexlRecord record) {
+		if (positions.length == 1) {
+			return canonical(record.get(positions[0]), kinds[0], scales[0]);
+		}
+		StringBuilder b = new StringBuilder();
+		for (int i = 0; i < positions.length; i++) {
+			if (i != 0) {
+				b.append(SEPARATOR);
+			}
+			b.append(canonical(record.get(positions[i]), kinds[i], scales[i]));
+		}
+		return b.toString();
+	}
+
+	/**
+	 * @param record the record
+	 * @param position the field position in the record
+	 * @return the canonical text of the field's value if it is a primary key field, else null
+	 */
+	String getKeyValue(JexlRecord record, int position) {
+		for (int i = 0; i < positions.length; i++) {
+			if (positions[i] == position) {
+				return canonical(record.get(position), kinds[i], scales[i]);
+			}
+		}
+		return null;
+	}
+
+	private static Kind getKind(Schema schema) {
+		LogicalType logicaltype = schema.getLogicalType();
+		String name = logicaltype == null ? "" : logicaltype.getName();
+		switch (schema.getType()) {
+		case INT:
+			return name.equals("date") ? Kind.DATE : Kind.NUMBER;
+		case LONG:
+			return name.startsWith("timestamp") ? Kind.TIMESTAMP : Kind.NUMBER;
+		case FLOAT:
+		case DOUBLE:
+			return Kind.NUMBER;
+		case BYTES:
+		case FIXED:
+			return name.equals("decimal") ? Kind.NUMBER : Kind.TEXT;
+		default:
+			return Kind.TEXT;
+		}
+	}
+
+	/**
+	 * @param value the value as found in the record
+	 * @param kind the kind of the field
+	 * @param scale the scale of a decimal field
+	 * @return the canonical text of the value
+	 */
+	static String canonical(Object value, Kind kind, int scale) {
+		if (value == null) {
+			return NULL_VALUE;
+		}
+		switch (kind) {
+		case NUMBER:
+			BigDecimal number = toNumber(value, scale);
+			if (number == null) {
+				return value.toString();
+			} else if (number.signum() == 0) {
+				return "0";
+			} else {
+				return number.stripTrailingZeros().toPlainString();
+			}
+		case DATE:
+			if (value instanceof Number) {
+				return LocalDate.ofEpochDay(((Number) value).longValue()).toString();
+			} else if (value instanceof java.sql.Date) {
+				return ((java.sql.Date) value).toLocalDate().toString();
+			} else {
+				Matcher m = DATE_TEXT.matcher(value.toString().trim());
+				return m.matches() ? m.group(1) : value.toString();
+			}
+		case TIMESTAMP:
+			if (value instanceof Number) {
+				long micros = ((Number) value).longValue();
+				LocalDateTime t = LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1000000L), (int) Math.floorMod(micros, 1000000L) * 1000, ZoneOffset.UTC);
+				return format(t);
+			} else if (value instanceof Timestamp) {
+				return format(((Timestamp) value).toLocalDateTime());
+			} else {
+				Matcher m = DATE_TEXT.matcher(value.toString().trim());
+				if (!m.matches()) {
+					return value.toString();
+				}
+				String fraction = m.group(7) == null ? "" : m.group(7);
+				fraction = (fraction + "000000").substring(0, 6);
+				LocalDateTime t = LocalDate.parse(m.group(1)).atTime(
+						m.group(3) == null ? 0 : Integer.parseInt(m.group(3)),
+						m.group(4) == null ? 0 : Integer.parseInt(m.group(4)),
+						m.group(5) == null ? 0 : Integer.parseInt(m.group(5)),
+						Integer.parseInt(fraction) * 1000);
+				return format(t);
+			}
+		default:
+			return value.toString();
+		}
+	}
+
+	/**
+	 * @return the value as number or null if it is not a number
+	 */
+	static BigDecimal toNumber(Object value, int scale) {
+		if (value == null) {
+			return null;
+		} else if (value instanceof BigDecimal) {
+			return (BigDecimal) value;
+		} else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+			return BigDecimal.valueOf(((Number) value).longValue());
+		} else if (value instanceof Float || value instanceof Double) {
+			double d = ((Number) value).doubleValue();
+			return Double.isFinite(d) ? BigDecimal.valueOf(d) : null;
+		} else if (value instanceof ByteBuffer) {
+			ByteBuffer b = ((ByteBuffer) value).duplicate();
+			byte[] data = new byte[b.remaining()];
+			b.get(data);
+			return data.length == 0 ? null : new BigDecimal(new BigInteger(data), scale);
+		} else if (value instanceof GenericData.Fixed) {
+			return new BigDecimal(new BigInteger(((GenericData.Fixed) value).bytes()), scale);
+		} else {
+			String text = value.toString().trim();
+			if (text.indexOf('.') == -1 && text.indexOf(',') == text.lastIndexOf(',')) {
+				text = text.replace(',', '.'); // NLS decimal comma
+			}
+			try {
+				return new BigDecimal(text);
+			} catch (NumberFormatException e) {
+				return null;
+			}
+		}
+	}
+
+	private static String format(LocalDateTime t) {
+		String s = t.toLocalDate().toString() + String.format(" %02d:%02d:%02d", t.getHour(), t.getMinute(), t.getSecond());
+		if (t.getNano() != 0) {
+			s = s + String.format(".%06d", t.getNano() / 1000);
+		}
+		return s;
+	}
+}
@@ -0,0 +1,205 @@
+package io.rtdi.bigdata.oracleconnector;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import io.rtdi.bigdata.connector.connectorframework.exceptions.ConnectorRuntimeException;
+
+/**
+ * Limits the impact of initial loads and catch-ups on the source database. One governor exists per JDBC URL and user and
+ * is shared by all producers of the connection.<br>
+ * It limits the number of loads running concurrently and the rows per second all loads read together. Additionally the
+ * database load is sampled from v$sysmetric: while the average active sessions or the single block read latency exceed
+ * the thresholds, the rate is halved per sample, once the database recovered it is raised again by a quarter per sample.
+ */
+public class LoadGovernor {
+	private static final Map<String, LoadGovernor> governors = new HashMap<>();
+	private static final long SAMPLE_INTERVAL_MILLIS = 15000L;
+	private static final int ROWS_PER_CHECK = 100;
+	private static final double MIN_RATE = 100.0;
+	private static final String SELECT_METRICS = "select metric_name, value from v$sysmetric where group_id = 2 \r\n"
+			+ "and metric_name in ('Average Active Sessions', 'Average Synchronous Single-Block Read Latency')";
+
+	protected final Logger logger = LogManager.getLogger(this.getClass().getName());
+	private final String key;
+	private final Semaphore sessions;
+	private final int maxrate;
+	private final double maxaas;
+	private final double maxreadlatency;
+	/**
+	 * The current rows per second limit, infinite if not limited
+	 */
+	private double rate;
+	private long nextfree = 0L;
+	private long lastsample = 0L;
+	private long rowssincesample = 0L;
+	private volatile boolean metricsavailable = true;
+
+	private LoadGovernor(String key, OracleConnectionProperties props) {
+		this.key = key;
+		this.sessions = new Semaphore(Math.max(1, props.getLoadSessions()), true);
+		this.maxrate = props.getLoadRowsPerSecond();
+		this.maxaas = props.getLoadMaxActiveSessions();
+		this.maxreadlatency = props.getLoadMaxReadLatency();
+		this.rate = maxrate > 0 ? maxrate : Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * @param props the connection properties, producers with the same JDBC URL and user share the governor
+	 * @return the governor
+	 */
+	public static LoadGovernor getGovernor(OracleConnectionProperties props) {
+		String key = props.getJDBCURL() + "#" + props.getUsername();
+		synchronized (governors) {
+			LoadGovernor governor = governors.get(key);
+			if (governor == null) {
+				governor = new LoadGovernor(key, props);
+				governors.put(key, governor);
+			}
+			return governor;
+		}
+	}
+
+	/**
+	 * Wait until the number of concurrent loads permits another one.
+	 *
+	 * @param conn the session the load reads with, also used to sample the database load
+	 * @return the lease to report the rows read with and to close at the end of the load
+	 * @throws ConnectorRuntimeException if interrupted
+	 */
+	public Lease acquire(Connection conn) throws ConnectorRuntimeException {
+		try {
+			sessions.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ConnectorRuntimeException("Waiting for a free load slot got interrupted", e, null, key);
+		}
+		return new Lease(conn);
+	}
+
+	/**
+	 * Reserve the time slot for the rows and sample the database load if due.
+	 * The sample is taken outside the monitor, so the other loads are not blocked by the query.
+	 *
+	 * @return the nanoseconds the caller has to wait before reading on
+	 */
+	private long reserve(Connection conn, int rows) {
+		double observedrate = -1.0;
+		synchronized (this) {
+			rowssincesample += rows;
+			long nowmillis = System.currentTimeMillis();
+			if (lastsample == 0L) {
+				lastsample = nowmillis;
+			} else if (nowmillis - lastsample > SAMPLE_INTERVAL_MILLIS) {
+				/*
+				 * This caller takes the sample, all others continue with the current rate meanwhile
+				 */
+				observedrate = rowssincesample * 1000.0 / (nowmillis - lastsample);
+				lastsample = nowmillis;
+				rowssincesample = 0L;
+			}
+		}
+		Boolean overloaded = observedrate >= 0.0 ? isOverloaded(conn) : null;
+		synchronized (this) {
+			if (overloaded != null) {
+				adjustRate(overloaded, observedrate);
+			}
+			if (Double.isInfinite(rate)) {
+				return 0L;
+			}
+			long now = System.nanoTime();
+			long start = Math.max(now, nextfree);
+			nextfree = start + (long) (rows * 1e9 / rate);
+			return start - now;
+		}
+	}
+
+	/**
+	 * @return true if a threshold is exceeded, null if the database load is not checked
+	 */
+	private Boolean isOverloaded(Connection conn) {
+		if (!metricsavailable || (maxaas <= 0 && maxreadlatency <= 0)) {
+			return null;
+		}
+		boolean overloaded = false;
+		try (PreparedStatement stmt = conn.prepareStatement(SELECT_METRICS);) {
+			try (ResultSet rs = stmt.executeQuery();) {
+				while (rs.next()) {
+					double value = rs.getDouble(2);
+					if (rs.getString(1).startsWith("Average Active") && maxaas > 0 && value > maxaas) {
+						overloaded = true;
+					} else if (rs.getString(1).startsWith("Average Synchronous") && maxreadlatency > 0 && value > maxreadlatency) {
+						overloaded = true;
+					}
+				}
+			}
+		} catch (SQLException e) {
+			logger.info("Cannot read v$sysmetric, loads are not throttled by the database load", e);
+			metricsavailable = false;
+			return null;
+		}
+		return overloaded;
+	}
+
+	private void adjustRate(boolean overloaded, double observedrate) {
+		if (overloaded) {
+			rate = Math.max(MIN_RATE, Math.min(rate, observedrate) / 2);
+			logger.info("Database is under load, reducing the load rate of {} to {} rows/s", key, (long) rate);
+		} else if (!Double.isInfinite(rate)) {
+			rate = rate * 1.25;
+			if (maxrate > 0 && rate >= maxrate) {
+				rate = maxrate;
+			} else if (maxrate <= 0 && rate > observedrate * 4) {
+				rate = Double.POSITIVE_INFINITY; // the loads do not use the allowed rate anyhow
+			}
+		}
+	}
+
+	/**
+	 * A running load, it reports its rows in chunks and waits if it reads too fast.
+	 */
+	public class Lease implements AutoCloseable {
+		private final Connection conn;
+		private int rows = 0;
+		private boolean closed = false;
+
+		private Lease(Connection conn) {
+			this.conn = conn;
+		}
+
+		/**
+		 * Called for every row read, blocks if the rate limit is reached.
+		 */
+		public void row() {
+			rows++;
+			if (rows == ROWS_PER_CHECK) {
+				rows = 0;
+				long wait = reserve(conn, ROWS_PER_CHECK);
+				if (wait > 0) {
+					try {
+						TimeUnit.NANOSECONDS.sleep(wait);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			}
+		}
+
+		@Override
+		public void close() {
+			if (!closed) {
+				closed = true;
+				sessions.release();
+			}
+		}
+	}
+}
@@ -0,0 +1,155 @@
+package io.rtdi.bigdata.oracleconnector;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Reads CLOB, NCLOB and BLOB columns through their streams with an upper limit, so a single huge document
+ * does not require a heap allocation of its full size. The buffers grow with the data actually read.
+ * The LOB locator is freed right after reading.
+ */
+public class LobReader {
+	private static final int BUFFER_SIZE = 32768;
+	/**
+	 * Java arrays cannot be larger, hence this is the limit for unlimited values
+	 */
+	private static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
+	/**
+	 * What to do with a LOB value larger than the allowed max length
+	 */
+	public enum LobPolicy {
+		/**
+		 * Send the first max length characters/bytes
+		 */
+		TRUNCATE,
+		/**
+		 * Send null instead of the value
+		 */
+		SKIP,
+		/**
+		 * Send a text pointing to the source record instead of the value
+		 */
+		REFERENCE
+	}
+
+	private LobReader() {
+	}
+
+	/**
+	 * @param rs the result set positioned on the row
+	 * @param index column index
+	 * @param maxlength max number of characters to read, 0 or negative for unlimited
+	 * @param policy what to do with larger values
+	 * @param reference text identifying the value for the REFERENCE policy
+	 * @return the (possibly truncated) text, null for null, empty or skipped values
+	 * @throws SQLException in case the LOB cannot be read
+	 */
+	public static String readClob(ResultSet rs, int index, int maxlength, LobPolicy policy, String reference) throws SQLException {
+		Clob clob = rs.getClob(index);
+		if (clob == null) {
+			return null;
+		}
+		try {
+			long length = clob.length();
+			if (length == 0) {
+				return null;
+			}
+			int limit = getLimit(maxlength);
+			int readlength;
+			if (length > limit) {
+				switch (policy) {
+				case SKIP:
+					return null;
+				case REFERENCE:
+					return getReference(reference, length);
+				default:
+					readlength = limit;
+				}
+			} else {
+				readlength = (int) length;
+			}
+			StringBuilder b = new StringBuilder(Math.min(BUFFER_SIZE, readlength));
+			char[] buffer = new char[Math.min(BUFFER_SIZE, readlength)];
+			try (Reader reader = clob.getCharacterStream();) {
+				int remaining = readlength;
+				int read;
+				while (remaining > 0 && (read = reader.read(buffer, 0, Math.min(buffer.length, remaining))) != -1) {
+					b.append(buffer, 0, read);
+					remaining -= read;
+				}
+			} catch (IOException e) {
+				throw new SQLException("Reading the CLOB stream failed", e);
+			}
+			return b.toString();
+		} finally {
+			clob.free();
+		}
+	}
+
+	/**
+	 * @param rs the result set positioned on the row
+	 * @param index column index
+	 * @param maxlength max number of bytes to read, 0 or negative for unlimited
+	 * @param policy what to do with larger values
+	 * @param reference text identifying the value for the REFERENCE policy
+	 * @return the (possibly truncated) bytes, null for null or skipped values
+	 * @throws SQLException in case the LOB cannot be read
+	 */
+	public static byte[] readBlob(ResultSet rs, int index, int maxlength, LobPolicy policy, String reference) throws SQLException {
+		Blob blob = rs.getBlob(index);
+		if (blob == null) {
+			return null;
+		}
+		try {
+			long length = blob.length();
+			int limit = getLimit(maxlength);
+			int readlength;
+			if (length > limit) {
+				switch (policy) {
+				case SKIP:
+					return null;
+				case REFERENCE:
+					return getReference(reference, length).getBytes(StandardCharsets.UTF_8);
+				default:
+					readlength = limit;
+				}
+			} else {
+				readlength = (int) length;
+			}
+			ByteArrayOutputStream data = new ByteArrayOutputStream(Math.min(BUFFER_SIZE, readlength));
+			byte[] buffer = new byte[Math.min(BUFFER_SIZE, Math.max(1, readlength))];
+			try (InputStream in = blob.getBinaryStream();) {
+				int remaining = readlength;
+				int read;
+				while (remaining > 0 && (read = in.read(buffer, 0, Math.min(buffer.length, remaining))) != -1) {
+					data.write(buffer, 0, read);
+					remaining -= read;
+				}
+			} catch (IOException e) {
+				throw new SQLException("Reading the BLOB stream failed", e);
+			}
+			return data.toByteArray(); // shorter than the LOB length if the stream ended early
+		} finally {
+			blob.free();
+		}
+	}
+
+	/**
+	 * @return the max length, values larger than what a Java array can hold are handled as exceeding the max length
+	 */
+	private static int getLimit(int maxlength) {
+		return maxlength > 0 && maxlength < MAX_ARRAY_LENGTH ? maxlength : MAX_ARRAY_LENGTH;
+	}
+
+	private static String getReference(String reference, long length) {
+		return "LOB-REFERENCE " + reference + " length=" + length;
+	}
+}
@@ -0,0 +1,223 @@
+package io.rtdi.bigdata.oracleconnector;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import io.rtdi.bigdata.connector.pipeline.foundation.exceptions.PropertiesException;
+import io.rtdi.bigdata.connector.pipeline.foundation.utils.FileNameEncoder;
+
+/**
+ * Caches the mapping names and the mappings built from the files of a connection's BusinessObjects directory, including
+ * their Avro schema. A WatchService on the directory invalidates the entries of files being created, modified or deleted,
+ * no matter if changed via the UI, by a producer or manually, and an entry is used only while its file has the same
+ * modification time. Until the directory exists or if it cannot be watched, nothing is cached.<br>
+ * The cached mappings are shared by all callers and must not be modified. Every caller gets its own copy,
+ * bound to its user and session, see {@link OracleTableMapping#copy(String, java.sql.Connection)}.
+ */
+public class MappingRegistry {
+	private static final Map<String, MappingRegistry> registries = new HashMap<>();
+
+	protected final Logger logger = LogManager.getLogger(this.getClass().getName());
+	private final File directory;
+	private final Map<String, Entry> mappings = new ConcurrentHashMap<>();
+	private volatile List<String> names = null;
+	private WatchService watcher = null;
+	private boolean watchfailed = false;
+	/**
+	 * Incremented with every invalidation, so a file read while it got changed is not cached
+	 */
+	private long generation = 0L;
+
+	/**
+	 * Reads a mapping file and builds the mapping.
+	 */
+	@FunctionalInterface
+	public interface Loader {
+		OracleTableMapping load(String name) throws PropertiesException;
+	}
+
+	private static class Entry {
+		private final OracleTableMapping mapping;
+		private final long lastmodified;
+
+		private Entry(OracleTableMapping mapping, long lastmodified) {
+			this.mapping = mapping;
+			this.lastmodified = lastmodified;
+		}
+	}
+
+	private MappingRegistry(File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * @param directory the BusinessObjects directory of the connection
+	 * @return the registry shared by all users of the directory
+	 */
+	public static MappingRegistry getRegistry(File directory) {
+		String key = directory.getAbsolutePath();
+		synchronized (registries) {
+			MappingRegistry registry = registries.get(key);
+			if (registry == null) {
+				registry = new MappingRegistry(directory);
+				registries.put(key, registry);
+			}
+			return registry;
+		}
+	}
+
+	/**
+	 * @return the names of all mappings or null if the directory does not exist
+	 */
+	public List<String> getNames() {
+		boolean cached = startWatching();
+		List<String> ret = names;
+		if (ret == null || !cached) {
+			long g = getGeneration();
+			ret = listNames();
+			synchronized (this) {
+				if (cached && g == generation) {
+					names = ret;
+				}
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * @param name the mapping name
+	 * @param loader reads the mapping file if it is not cached
+	 * @return the cached or just read mapping, it must not be modified
+	 * @throws PropertiesException if the mapping file cannot be read
+	 */
+	public OracleTableMapping get(String name, Loader loader) throws PropertiesException {
+		if (!startWatching()) {
+			return loader.load(name);
+		}
+		long lastmodified = new File(directory, FileNameEncoder.encodeName(name + ".json")).lastModified();
+		Entry entry = mappings.get(name);
+		if (entry == null || entry.lastmodified != lastmodified) {
+			long g = getGeneration();
+			entry = new Entry(loader.load(name), lastmodified);
+			synchronized (this) {
+				if (g == generation) {
+					mappings.put(name, entry);
+				}
+			}
+		}
+		return entry.mapping;
+	}
+
+	/**
+	 * Remove the mapping from the cache, e.g. right after writing its file and before the WatchService reports the change.
+	 *
+	 * @param name the mapping name
+	 */
+	public synchronized void invalidate(String name) {
+		generation++;
+		mappings.remove(name);
+		names = null;
+	}
+
+	private synchronized void invalidateAll() {
+		generation++;
+		mappings.clear();
+		names = null;
+	}
+
+	private synchronized long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * @return true if the directory is watched and hence the cache can be used
+	 */
+	private synchronized boolean startWatching() {
+		if (watcher != null) {
+			return true;
+		} else if (watchfailed || !directory.isDirectory()) {
+			return false;
+		}
+		try {
+			WatchService w = FileSystems.getDefault().newWatchService();
+			directory.toPath().register(w, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+			watcher = w;
+			invalidateAll();
+			Thread.ofVirtual().name("mappingregistry-" + directory.getParentFile().getName()).start(() -> watch(w));
+			return true;
+		} catch (IOException e) {
+			logger.info("Cannot watch the directory {}, the mappings are not cached", directory.getAbsolutePath(), e);
+			watchfailed = true;
+			return false;
+		}
+	}
+
+	private void watch(WatchService w) {
+		try {
+			while (true) {
+				WatchKey key = w.take();
+				for (WatchEvent<?> event : key.pollEvents()) {
+					if (event.kind() == OVERFLOW) {
+						invalidateAll();
+					} else {
+						String filename = ((Path) event.context()).getFileName().toString();
+						if (filename.endsWith(".json")) {
+							String name = FileNameEncoder.decodeName(filename);
+							invalidate(name.substring(0, name.length()-5));
+						}
+					}
+				}
+				if (!key.reset()) {
+					break; // the directory got deleted
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ClosedWatchServiceException e) {
+		}
+		synchronized (this) {
+			try {
+				w.close();
+			} catch (IOException e) {
+			}
+			watcher = null;
+			invalidateAll();
+		}
+	}
+
+	private List<String> listNames() {
+		if (!directory.isDirectory()) {
+			return null;
+		}
+		File[] files = directory.listFiles();
+		List<String> ret = new ArrayList<>();
+		if (files != null) {
+			for (File f : files) {
+				if (f.getName().endsWith(".json") && f.isFile()) {
+					String name = FileNameEncoder.decodeName(f.getName());
+					ret.add(name.substring(0, name.length()-5)); // remove the .json ending
+				}
+			}
+		}
+		return ret;
+	}
+}
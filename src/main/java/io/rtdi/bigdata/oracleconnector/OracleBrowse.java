@@ -7,30 +7,45 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.avro.Schema;
 import org.apache.avro.SchemaBuilderException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
 import io.rtdi.bigdata.connector.connectorframework.BrowsingService;
 import io.rtdi.bigdata.connector.connectorframework.controller.ConnectionController;
 import io.rtdi.bigdata.connector.connectorframework.entity.TableEntry;
 import io.rtdi.bigdata.connector.connectorframework.exceptions.ConnectorRuntimeException;
-import io.rtdi.bigdata.connector.pipeline.foundation.utils.FileNameEncoder;
+import io.rtdi.bigdata.connector.pipeline.foundation.exceptions.PropertiesException;
+import io.rtdi.bigdata.oracleconnector.OracleTableMapping.TriggerConditions;
 
 public class OracleBrowse extends BrowsingService<OracleConnectionProperties> {
 	
 	private File bopath;
 	private Connection conn;
+	private OracleTableCatalog catalog;
+	private MappingRegistry registry;
+	private String username;
+	protected final Logger logger = LogManager.getLogger(this.getClass().getName());
 
 	public OracleBrowse(ConnectionController controller) throws IOException {
 		super(controller);
 		bopath = new File(controller.getDirectory(), "BusinessObjects");
+		registry = MappingRegistry.getRegistry(bopath);
 	}
 
 	@Override
 	public void open() throws IOException {
 		conn = OracleConnectorFactory.getDatabaseConnection(getConnectionProperties());
+		try {
+			username = conn.getSchema();
+		} catch (SQLException e) {
+			logger.info("Cannot read the schema of the session, using the configured user", e);
+		}
 	}
 
 	@Override
@@ -42,20 +57,16 @@ public class OracleBrowse extends BrowsingService<OracleConnectionProperties> {
 			}
 			conn = null;
 		}
+		username = null;
 	}
 
 	@Override
 	public List<TableEntry> getRemoteSchemaNames() throws IOException {
-		if (bopath.isDirectory()) {
-			File[] files = bopath.listFiles();
+		List<String> names = registry.getNames();
+		if (names != null) {
 			List<TableEntry> ret = new ArrayList<>();
-			if (files != null) {
-				for (File f : files) {
-					if (f.getName().endsWith(".json") && f.isFile()) {
-						String name = FileNameEncoder.decodeName(f.getName());
-						ret.add(new TableEntry(name.substring(0, name.length()-5))); // remove the .json ending
-					}
-				}
+			for (String name : names) {
+				ret.add(new TableEntry(name));
 			}
 			return ret;
 		} else {
@@ -65,7 +76,7 @@ public class OracleBrowse extends BrowsingService<OracleConnectionProperties> {
 
 	@Override
 	public Schema getRemoteSchemaOrFail(String name) throws IOException {
-		OracleTableMapping n1 = OracleTableMapping.readDefinition(null, name, null, bopath);
+		OracleTableMapping n1 = getBusinessObject(name);
 		try {
 			return n1.getAvroSchema();
 		} catch (SchemaBuilderException e) {
@@ -73,16 +84,65 @@ public class OracleBrowse extends BrowsingService<OracleConnectionProperties> {
 		}
 	}
 
+	/**
+	 * @param name the mapping name
+	 * @return a new mapping using this browser's user and session, a copy of the one cached by the {@link MappingRegistry}
+	 * @throws IOException if the mapping cannot be read
+	 */
 	public OracleTableMapping getBusinessObject(String name) throws IOException {
-		String username = null;
-		if (conn != null) {
-			try {
-				username = conn.getSchema();
-			} catch (SQLException e) {
+		OracleTableMapping cached = registry.get(name, (n) -> loadBusinessObject(n));
+		return cached.copy(getUsername(), conn);
+	}
+
+	/**
+	 * Read the mapping file and build the Avro schema, so the copies handed out share it.
+	 */
+	private OracleTableMapping loadBusinessObject(String name) throws PropertiesException {
+		OracleTableMapping o = OracleTableMapping.readDefinition(null, name, null, OracleTableMapping.readFile(name, bopath));
+		try {
+			o.getAvroSchema();
+		} catch (SchemaBuilderException | ConnectorRuntimeException e) {
+			logger.debug("The Avro schema of mapping \"{}\" cannot be built", name, e); // each copy reports the error when asked for the schema
+		}
+		return o;
+	}
+
+	/**
+	 * The triggers of a table are shared by all mappings reading it, hence their WHEN clause depends on all mappings of the connection,
+	 * not only on the ones being deployed.
+	 * 
+	 * @return the combined trigger conditions of all mappings of the connection per owner.tablename
+	 * @throws IOException if a mapping cannot be read
+	 */
+	public Map<String, TriggerConditions> getTriggerConditions() throws IOException {
+		Map<String, TriggerConditions> ret = new HashMap<>();
+		List<TableEntry> names = getRemoteSchemaNames();
+		if (names != null) {
+			for (TableEntry name : names) {
+				for (OracleTableMapping table : getBusinessObject(name.getTablename()).getAllTableMappings()) {
+					ret.computeIfAbsent(table.getTableKey(), k -> new TriggerConditions()).add(table);
+				}
 			}
 		}
-		OracleTableMapping n1 = OracleTableMapping.readDefinition(username, name, conn, bopath);
-		return n1;
+		return ret;
+	}
+
+	/**
+	 * @return the connected user as the PKLOG owner, the configured user if not connected
+	 */
+	private String getUsername() {
+		return username != null ? username : getConnectionProperties().getUsername();
+	}
+
+	/**
+	 * Write the mapping file and remove the previous version from the cache.
+	 *
+	 * @param mapping the mapping to save
+	 * @throws PropertiesException if the file cannot be written
+	 */
+	public void writeBusinessObject(OracleTableMapping mapping) throws PropertiesException {
+		mapping.write(bopath);
+		registry.invalidate(mapping.getName());
 	}
 
 	public File getBusinessObjectDirectory() {
@@ -90,29 +150,28 @@ public class OracleBrowse extends BrowsingService<OracleConnectionProperties> {
 	}
 	
 	public List<TableImport> getOracleTables() throws ConnectorRuntimeException {
-		/*
-		 * Get all tables that are not Oracle maintained, hence ignoring SYS, SYSTEM,...
-		 * If the user has CREATE-ANY-TRIGGER then all schemas are shown.
-		 * If the user has just CREATE-TRIGGER privs, only the own tables are shown.
-		 */
-		String sql = "select owner, table_name from all_tables \r\n"
-				+ "  where owner not in (select username from all_users where oracle_maintained = 'Y') and \r\n"
-				+ "    ( exists (select privilege from USER_SYS_PRIVS where privilege = 'CREATE ANY TRIGGER') \r\n"
-				+ "      or (exists (select privilege from USER_SYS_PRIVS where privilege = 'CREATE TRIGGER') \r\n"
-				+ "          and owner = user))";
-		try (PreparedStatement stmt = conn.prepareStatement(sql);) {
-			ResultSet rs = stmt.executeQuery();
-			List<TableImport> sortedlist = new ArrayList<>();
-			while (rs.next()) {
-				String schemaname = rs.getString(1);
-				String tablename = rs.getString(2);
-				sortedlist.add(new TableImport(schemaname, tablename));
-			}
-			return sortedlist;
-		} catch (SQLException e) {
-			throw new ConnectorRuntimeException("Reading all tables of the ALL_TABLES view failed", e, 
-					"Execute the sql as Oracle user \"" + getConnectionProperties().getUsername() + "\"", sql);
+		return getTableCatalog().getTables(conn);
+	}
+
+	/**
+	 * @param owner optional owner prefix filter
+	 * @param name optional table name filter
+	 * @param sort column to sort by, oracleowner or oracletablename
+	 * @param descending sort order
+	 * @param offset first row
+	 * @param limit page size
+	 * @return one page of the tables the user can capture
+	 * @throws ConnectorRuntimeException if the dictionary cannot be read
+	 */
+	public TableImportPage getOracleTables(String owner, String name, String sort, boolean descending, int offset, int limit) throws ConnectorRuntimeException {
+		return getTableCatalog().getPage(conn, owner, name, sort, descending, offset, limit);
+	}
+
+	private synchronized OracleTableCatalog getTableCatalog() {
+		if (catalog == null) {
+			catalog = new OracleTableCatalog(getConnectionProperties().getCatalogTTL());
 		}
+		return catalog;
 	}
 	
 	public Connection getConnection() {
@@ -166,6 +225,57 @@ public class OracleBrowse extends BrowsingService<OracleConnectionProperties> {
 		}
 	}
 
+	public static class TableImportPage {
+		private int total;
+		private int offset;
+		private int limit;
+		private List<TableImport> rows;
+
+		public TableImportPage() {
+			super();
+		}
+
+		public TableImportPage(int total, int offset, int limit, List<TableImport> rows) {
+			super();
+			this.total = total;
+			this.offset = offset;
+			this.limit = limit;
+			this.rows = rows;
+		}
+
+		public int getTotal() {
+			return total;
+		}
+
+		public void setTotal(int total) {
+			this.total = total;
+		}
+
+		public int getOffset() {
+			return offset;
+		}
+
+		public void setOffset(int offset) {
+			this.offset = offset;
+		}
+
+		public int getLimit() {
+			return limit;
+		}
+
+		public void setLimit(int limit) {
+			this.limit = limit;
+		}
+
+		public List<TableImport> getRows() {
+			return rows;
+		}
+
+		public void setRows(List<TableImport> rows) {
+			this.rows = rows;
+		}
+	}
+
 	@Override
 	public void validate() throws IOException {
 		close();
@@ -192,5 +302,6 @@ public class OracleBrowse extends BrowsingService<OracleConnectionProperties> {
 	public void deleteRemoteSchemaOrFail(String remotename) throws IOException {
 		File file = new File(bopath, remotename + ".json");
 		java.nio.file.Files.delete(file.toPath());
+		registry.invalidate(remotename);
 	}
 }
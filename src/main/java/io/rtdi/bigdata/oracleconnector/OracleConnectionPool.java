@@ -0,0 +1,157 @@
+package io.rtdi.bigdata.oracleconnector;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import io.rtdi.bigdata.connector.connectorframework.exceptions.ConnectorRuntimeException;
+
+/**
+ * A small pool of database sessions shared by all producers of the same JDBC URL and user.
+ * Producers are idle most of the time, so instead of keeping one session each they lease a session for the duration
+ * of a poll and hand it back afterwards. The number of sessions is bounded by the connection's pool size, callers
+ * block until a session is available, which is cheap when running on virtual threads.<br>
+ * A session must be handed back with all work committed or rolled back, the pool rolls back in any case.
+ */
+public class OracleConnectionPool {
+	private static final Map<String, OracleConnectionPool> pools = new HashMap<>();
+	private static final long IDLE_TIMEOUT_MILLIS = 300000L;
+	private static final long ACQUIRE_TIMEOUT_SECONDS = 600L;
+
+	protected final Logger logger = LogManager.getLogger(this.getClass().getName());
+	private final String jdbcurl;
+	private final String username;
+	private final String password;
+	private final Semaphore permits;
+	private final int size;
+	private final Deque<IdleConnection> idle = new ArrayDeque<>();
+
+	private OracleConnectionPool(String jdbcurl, String username, String password, int size) {
+		this.jdbcurl = jdbcurl;
+		this.username = username;
+		this.password = password;
+		this.size = Math.max(1, size);
+		this.permits = new Semaphore(this.size, true);
+	}
+
+	/**
+	 * @param props the connection properties, producers with the same JDBC URL and user share the pool
+	 * @return the shared pool
+	 */
+	public static OracleConnectionPool getPool(OracleConnectionProperties props) {
+		return getPool(props.getJDBCURL(), props.getUsername(), props.getPassword(), props.getPoolSize());
+	}
+
+	/**
+	 * @param props the connection properties
+	 * @return the shared pool of the Active Data Guard standby or null if the connection has no standby
+	 */
+	public static OracleConnectionPool getStandbyPool(OracleConnectionProperties props) {
+		if (!props.hasStandby()) {
+			return null;
+		}
+		return getPool(props.getStandbyJDBCURL(), props.getStandbyUsername(), props.getStandbyPassword(), props.getPoolSize());
+	}
+
+	private static OracleConnectionPool getPool(String jdbcurl, String username, String password, int size) {
+		String key = jdbcurl + "#" + username;
+		synchronized (pools) {
+			OracleConnectionPool pool = pools.get(key);
+			if (pool == null) {
+				pool = new OracleConnectionPool(jdbcurl, username, password, size);
+				pools.put(key, pool);
+			}
+			return pool;
+		}
+	}
+
+	/**
+	 * @return a session with autocommit turned off, waiting for a free session if all are in use
+	 * @throws ConnectorRuntimeException if no session got available in time or the connect failed
+	 */
+	public Connection acquire() throws ConnectorRuntimeException {
+		try {
+			if (!permits.tryAcquire(ACQUIRE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+				throw new ConnectorRuntimeException("No free database session in the pool", null,
+						"Increase the pool size of the connection", jdbcurl + " (" + size + " sessions)");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ConnectorRuntimeException("Waiting for a database session got interrupted", e, null, jdbcurl);
+		}
+		try {
+			Connection conn = pollIdle();
+			if (conn == null) {
+				conn = OracleConnectorFactory.getDatabaseConnection(jdbcurl, username, password);
+			}
+			return conn;
+		} catch (SQLException e) {
+			permits.release();
+			throw new ConnectorRuntimeException("Failed to establish a database connection", e, null, jdbcurl);
+		}
+	}
+
+	/**
+	 * Hand back the session.
+	 *
+	 * @param conn the session as returned by {@link #acquire()}, null is ignored
+	 */
+	public void release(Connection conn) {
+		if (conn == null) {
+			return;
+		}
+		try {
+			if (conn.isClosed()) {
+				return;
+			}
+			conn.rollback();
+			synchronized (idle) {
+				idle.push(new IdleConnection(conn));
+			}
+		} catch (SQLException e) {
+			logger.info("Database session is broken, closing it", e);
+			close(conn);
+		} finally {
+			permits.release();
+		}
+	}
+
+	/**
+	 * @return the most recently used idle session, sessions idle for long are closed
+	 */
+	private Connection pollIdle() {
+		long now = System.currentTimeMillis();
+		synchronized (idle) {
+			while (idle.size() != 0 && now - idle.peekLast().since > IDLE_TIMEOUT_MILLIS) {
+				close(idle.pollLast().conn);
+			}
+			IdleConnection c = idle.pollFirst();
+			return c == null ? null : c.conn;
+		}
+	}
+
+	private void close(Connection conn) {
+		try {
+			conn.close();
+		} catch (SQLException e) {
+			logger.info("Oracle connection close failed - ignored", e);
+		}
+	}
+
+	private static class IdleConnection {
+		private final Connection conn;
+		private final long since = System.currentTimeMillis();
+
+		private IdleConnection(Connection conn) {
+			this.conn = conn;
+		}
+	}
+}
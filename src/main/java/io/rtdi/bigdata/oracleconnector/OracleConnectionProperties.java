@@ -8,12 +8,32 @@ public class OracleConnectionProperties extends ConnectionProperties {
 	private static final String JDBCURL = "oracle.jdbcurl";
 	private static final String USERNAME = "oracle.username";
 	private static final String PASSWORD = "oracle.password";
+	private static final String CATALOGTTL = "oracle.catalogttl";
+	private static final String DDLPARALLEL = "oracle.ddlparallel";
+	private static final String POOLSIZE = "oracle.poolsize";
+	private static final String LOADROWSPERSECOND = "oracle.loadrowspersecond";
+	private static final String LOADSESSIONS = "oracle.loadsessions";
+	private static final String LOADMAXAAS = "oracle.loadmaxaas";
+	private static final String LOADMAXREADLATENCY = "oracle.loadmaxreadlatency";
+	private static final String STANDBYJDBCURL = "oracle.standby.jdbcurl";
+	private static final String STANDBYUSERNAME = "oracle.standby.username";
+	private static final String STANDBYPASSWORD = "oracle.standby.password";
 
 	public OracleConnectionProperties(String name) {
 		super(name);
 		properties.addStringProperty(JDBCURL, "JDBC URL", "The JDBC URL to use for connecting to the Oracle system", "sap-icon://target-group", "jdbc:oracle:thin:...", true);
 		properties.addStringProperty(USERNAME, "Username", "Oracle database username", "sap-icon://target-group", null, true);
 		properties.addPasswordProperty(PASSWORD, "Password", "Password", "sap-icon://target-group", null, true);
+		properties.addIntegerProperty(CATALOGTTL, "Table list cache (sec)", "Seconds the list of source tables is cached before checking the dictionary for changes", null, 300, false);
+		properties.addIntegerProperty(DDLPARALLEL, "Parallel trigger deployment", "Max number of database sessions creating triggers concurrently", null, 4, false);
+		properties.addIntegerProperty(POOLSIZE, "Shared session pool size", "Max number of database sessions all producers of this connection use concurrently", null, 8, false);
+		properties.addIntegerProperty(LOADROWSPERSECOND, "Load rows/s", "Max rows per second all initial loads and catch-ups of this connection read together, 0 for unlimited", null, 0, false);
+		properties.addIntegerProperty(LOADSESSIONS, "Concurrent loads", "Max number of initial loads and catch-ups of this connection running at the same time", null, 2, false);
+		properties.addIntegerProperty(LOADMAXAAS, "Load back-off active sessions", "Slow down the loads while the database's average active sessions exceed this value, 0 to disable", null, 0, false);
+		properties.addIntegerProperty(LOADMAXREADLATENCY, "Load back-off read latency (ms)", "Slow down the loads while the average single block read latency exceeds this value, 0 to disable", null, 0, false);
+		properties.addStringProperty(STANDBYJDBCURL, "Standby JDBC URL", "Optional Active Data Guard standby to read the initial loads and the changed rows from", "sap-icon://target-group", null, false);
+		properties.addStringProperty(STANDBYUSERNAME, "Standby username", "Username at the standby, empty to use the primary's. Requires select on the primary user's PKLOG and the source tables", "sap-icon://target-group", null, false);
+		properties.addPasswordProperty(STANDBYPASSWORD, "Standby password", "Password at the standby, empty to use the primary's", "sap-icon://target-group", null, false);
 	}
 
 	public String getJDBCURL() {
@@ -28,6 +48,56 @@ public class OracleConnectionProperties extends ConnectionProperties {
 		return properties.getPasswordPropertyValue(PASSWORD);
 	}
 	
+	public int getCatalogTTL() {
+		return properties.getIntPropertyValue(CATALOGTTL);
+	}
+
+	public int getDDLParallelism() {
+		return properties.getIntPropertyValue(DDLPARALLEL);
+	}
+
+	public int getPoolSize() {
+		return properties.getIntPropertyValue(POOLSIZE);
+	}
+
+	public int getLoadRowsPerSecond() {
+		return properties.getIntPropertyValue(LOADROWSPERSECOND);
+	}
+
+	public int getLoadSessions() {
+		return properties.getIntPropertyValue(LOADSESSIONS);
+	}
+
+	public int getLoadMaxActiveSessions() {
+		return properties.getIntPropertyValue(LOADMAXAAS);
+	}
+
+	public int getLoadMaxReadLatency() {
+		return properties.getIntPropertyValue(LOADMAXREADLATENCY);
+	}
+
+	public String getStandbyJDBCURL() {
+		return properties.getStringPropertyValue(STANDBYJDBCURL);
+	}
+
+	public String getStandbyUsername() {
+		String value = properties.getStringPropertyValue(STANDBYUSERNAME);
+		return value == null || value.length() == 0 ? getUsername() : value;
+	}
+
+	public String getStandbyPassword() {
+		String value = properties.getPasswordPropertyValue(STANDBYPASSWORD);
+		return value == null || value.length() == 0 ? getPassword() : value;
+	}
+
+	/**
+	 * @return true if reads should be offloaded to an Active Data Guard standby
+	 */
+	public boolean hasStandby() {
+		String value = getStandbyJDBCURL();
+		return value != null && value.length() != 0;
+	}
+
 	public void setJDBCURL(String value) throws PropertiesException {
 		properties.setProperty(JDBCURL, value);
 	}
@@ -40,4 +110,44 @@ public class OracleConnectionProperties extends ConnectionProperties {
 		properties.setProperty(PASSWORD, value);
 	}
 
+	public void setCatalogTTL(int value) throws PropertiesException {
+		properties.setProperty(CATALOGTTL, value);
+	}
+
+	public void setDDLParallelism(int value) throws PropertiesException {
+		properties.setProperty(DDLPARALLEL, value);
+	}
+
+	public void setPoolSize(int value) throws PropertiesException {
+		properties.setProperty(POOLSIZE, value);
+	}
+
+	public void setLoadRowsPerSecond(int value) throws PropertiesException {
+		properties.setProperty(LOADROWSPERSECOND, value);
+	}
+
+	public void setLoadSessions(int value) throws PropertiesException {
+		properties.setProperty(LOADSESSIONS, value);
+	}
+
+	public void setLoadMaxActiveSessions(int value) throws PropertiesException {
+		properties.setProperty(LOADMAXAAS, value);
+	}
+
+	public void setLoadMaxReadLatency(int value) throws PropertiesException {
+		properties.setProperty(LOADMAXREADLATENCY, value);
+	}
+
+	public void setStandbyJDBCURL(String value) throws PropertiesException {
+		properties.setProperty(STANDBYJDBCURL, value);
+	}
+
+	public void setStandbyUsername(String value) throws PropertiesException {
+		properties.setProperty(STANDBYUSERNAME, value);
+	}
+
+	public void setStandbyPassword(String value) throws PropertiesException {
+		properties.setProperty(STANDBYPASSWORD, value);
+	}
+
 }
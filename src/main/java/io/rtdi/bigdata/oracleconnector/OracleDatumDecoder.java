@@ -0,0 +1,61 @@
+package io.rtdi.bigdata.oracleconnector;
+
+/**
+ * Decodes the internal byte representation of Oracle DATE and TIMESTAMP values directly into the
+ * Avro logical type values, epoch days for date and epoch microseconds for timestamp-micros.<br>
+ * Oracle stores DATE as 7 bytes: century+100, year of century+100, month, day, hour+1, minute+1, second+1.
+ * TIMESTAMP adds 4 bytes of nanoseconds (big endian), but omits them when they are zero.
+ * TIMESTAMP WITH TIME ZONE stores the first 7 bytes in UTC followed by the time zone bytes.<br>
+ * The values are interpreted as UTC, so the result does not depend on the JVM's default time zone,
+ * unlike {@link java.sql.ResultSet#getTimestamp(int)}.
+ */
+public class OracleDatumDecoder {
+	private static final long SECONDS_PER_DAY = 86400L;
+	private static final long MICROS_PER_SECOND = 1000000L;
+
+	private OracleDatumDecoder() {
+	}
+
+	/**
+	 * @param b the Oracle DATE or TIMESTAMP bytes
+	 * @return days since 1970-01-01
+	 */
+	public static int toEpochDays(byte[] b) {
+		int year = ((b[0] & 0xff) - 100) * 100 + ((b[1] & 0xff) - 100);
+		int month = b[2] & 0xff;
+		int day = b[3] & 0xff;
+		return (int) daysFromCivil(year, month, day);
+	}
+
+	/**
+	 * @param b the Oracle DATE, TIMESTAMP or TIMESTAMP WITH TIME ZONE bytes
+	 * @return microseconds since 1970-01-01 00:00:00 UTC
+	 */
+	public static long toEpochMicros(byte[] b) {
+		int year = ((b[0] & 0xff) - 100) * 100 + ((b[1] & 0xff) - 100);
+		int month = b[2] & 0xff;
+		int day = b[3] & 0xff;
+		int hour = (b[4] & 0xff) - 1;
+		int minute = (b[5] & 0xff) - 1;
+		int second = (b[6] & 0xff) - 1;
+		long seconds = daysFromCivil(year, month, day) * SECONDS_PER_DAY + hour * 3600L + minute * 60L + second;
+		long nanos = 0;
+		if (b.length >= 11) {
+			nanos = ((b[7] & 0xffL) << 24) | ((b[8] & 0xffL) << 16) | ((b[9] & 0xffL) << 8) | (b[10] & 0xffL);
+		}
+		return seconds * MICROS_PER_SECOND + nanos / 1000L;
+	}
+
+	/**
+	 * Days since epoch of a proleptic Gregorian date, without creating any objects.
+	 * See Howard Hinnant, chrono-compatible low-level date algorithms.
+	 */
+	static long daysFromCivil(int year, int month, int day) {
+		long y = month <= 2 ? year - 1 : year;
+		long era = (y >= 0 ? y : y - 399) / 400;
+		long yoe = y - era * 400;
+		long doy = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+		long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+		return era * 146097 + doe - 719468;
+	}
+}
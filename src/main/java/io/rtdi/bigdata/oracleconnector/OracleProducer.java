@@ -2,7 +2,6 @@ package io.rtdi.bigdata.oracleconnector;
 
 import java.io.IOException;
 import java.sql.Connection;
-import java.sql.JDBCType;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -20,13 +19,15 @@ import io.rtdi.bigdata.connector.connectorframework.Producer;
 import io.rtdi.bigdata.connector.connectorframework.controller.ProducerInstanceController;
 import io.rtdi.bigdata.connector.connectorframework.exceptions.ConnectorRuntimeException;
 import io.rtdi.bigdata.connector.pipeline.foundation.SchemaHandler;
+import io.rtdi.bigdata.connector.pipeline.foundation.SchemaName;
 import io.rtdi.bigdata.connector.pipeline.foundation.TopicHandler;
 import io.rtdi.bigdata.connector.pipeline.foundation.TopicName;
 import io.rtdi.bigdata.connector.pipeline.foundation.avro.JexlGenericData.JexlRecord;
 import io.rtdi.bigdata.kafka.avro.RowType;
-import io.rtdi.bigdata.kafka.avro.datatypes.*;
+import io.rtdi.bigdata.kafka.avro.recordbuilders.KeySchema;
 import io.rtdi.bigdata.connector.pipeline.foundation.exceptions.PropertiesException;
-import io.rtdi.bigdata.connector.pipeline.foundation.utils.AvroNameEncoder;
+import io.rtdi.bigdata.oracleconnector.TriggerDeploymentPlanner.TableDeployment;
+import io.rtdi.bigdata.oracleconnector.TriggerDeploymentPlanner.TriggerDeploymentPlan;
 
 /**
  * This is a trigger based Oracle connector.
@@ -37,7 +38,20 @@ import io.rtdi.bigdata.connector.pipeline.foundation.utils.AvroNameEncoder;
  */
 public class OracleProducer extends Producer<OracleConnectionProperties, OracleProducerProperties> {
 
+	/**
+	 * The session leased from the shared pool for the duration of a call from the framework, null in between
+	 */
 	private Connection conn = null;
+	private OracleConnectionPool pool;
+	private int leases = 0;
+	/**
+	 * The sessions of the Active Data Guard standby to offload the table reads to, null if the connection has no standby
+	 */
+	private OracleConnectionPool standbypool;
+	/**
+	 * Throttles initial loads and catch-ups of all producers of the connection
+	 */
+	private LoadGovernor governor;
 	private TopicHandler topic;
 	private String username = null;
 	/**
@@ -49,27 +63,138 @@ public class OracleProducer extends Producer<OracleConnectionProperties, OracleP
 	 * As a master table can be used in multiple schemas, the Map returns a List.
 	 */
 	private Map<String, List<OracleTableMapping>> tabledirectory = new HashMap<>();
+	private static final int INITIAL_LOAD_FETCHSIZE = 1000;
+	private static final long STANDBY_MAX_WAIT_MILLIS = 10000L;
+	private static final String SELECT_MODIFIED_TABLES = "select 1 from all_tables t \r\n"
+			+ "left outer join all_tab_modifications m on (m.table_owner = t.owner and m.table_name = t.table_name and m.partition_name is null) \r\n"
+			+ "where (t.last_analyzed is null or t.last_analyzed >= scn_to_timestamp(?) or m.timestamp >= scn_to_timestamp(?)) \r\n"
+			+ "and t.owner = ? and t.table_name = ?";
+	private SharedChangeReader changereader = null;
+	/**
+	 * The partition assignment per mapping, records of the same primary key are sent to the same partition
+	 */
+	private Map<OracleTableMapping, PartitionRouter> routers = new HashMap<>();
+	/**
+	 * The partitions of the topic as it exists, it might have been created with a different setting
+	 */
+	private int partitioncount = 1;
+	/**
+	 * The hash of the last row image sent per primary key, for mappings suppressing unchanged rows
+	 */
+	private Map<OracleTableMapping, RowHashCache> rowcaches = new HashMap<>();
+	private SchemaDriftDetector driftdetector = new SchemaDriftDetector();
+	/**
+	 * The schemas registered after a DDL change of a source table, these replace the schemas created at startup
+	 */
+	private Map<String, SchemaHandler> refreshedschemas = new HashMap<>();
+	/**
+	 * Mappings whose changes are no longer in the PKLOG after a restart, they are re-read entirely by the next poll
+	 */
+	private Set<OracleTableMapping> reloadrequired = new HashSet<>();
+	/**
+	 * The restart SCN the mappings to be re-read were sent up to, their rows deleted since are found via a flashback query
+	 */
+	private long reloadscn;
+	/**
+	 * Tables altered while running whose trigger deployment failed, retried by the next poll before any change is read
+	 */
+	private List<OracleTableMapping> pendingtriggers = new ArrayList<>();
+	/**
+	 * The SCN up to which the mappings of a poll class got extracted, key is the class' poll interval in seconds with 0 for
+	 * the mappings extracted by every poll. The producer's position is the lowest of them.
+	 */
+	private Map<Integer, Long> watermarks = new HashMap<>();
+	private Map<Integer, Long> lastpolls = new HashMap<>();
 	
 	public OracleProducer(ProducerInstanceController instance) throws PropertiesException {
 		super(instance);
-		setConnection();
+		pool = OracleConnectionPool.getPool((OracleConnectionProperties) instance.getConnectionProperties());
+		standbypool = OracleConnectionPool.getStandbyPool((OracleConnectionProperties) instance.getConnectionProperties());
+		governor = LoadGovernor.getGovernor((OracleConnectionProperties) instance.getConnectionProperties());
+		leaseConnection();
 		try {
 			username = conn.getSchema();
 		} catch (SQLException e) {
 			throw new ConnectorRuntimeException("Getting the current user for the database failed?!?", e, 
 					null, null);
+		} finally {
+			releaseConnection();
 		}
 		logger.debug("Connected user is {}", username);
 	}
 	
-	private void setConnection() throws ConnectorRuntimeException {
-		OracleConnectionProperties props = (OracleConnectionProperties) instance.getConnectionProperties();
-		conn = OracleConnectorFactory.getDatabaseConnection(props);
-		try {
-			conn.setAutoCommit(false);
+	/**
+	 * Lease a session from the shared pool, nested calls use the same session. Producers are idle between polls,
+	 * hence many producers can share a few sessions.
+	 */
+	private void leaseConnection() throws ConnectorRuntimeException {
+		if (leases == 0) {
+			conn = pool.acquire();
+			for (OracleTableMapping obj : schemadirectory.values()) {
+				obj.setConnection(conn);
+			}
+		}
+		leases++;
+	}
+
+	/**
+	 * Hand back the session when the outermost lease ends, all work must be committed or rolled back by then
+	 */
+	private void releaseConnection() {
+		leases--;
+		if (leases == 0) {
+			pool.release(conn);
+			conn = null;
+		}
+	}
+
+	/**
+	 * The table reads go to the standby if it has applied all changes up to the SCN, otherwise to the primary.
+	 * The standby gets a few seconds to catch up before falling back to the primary.
+	 * 
+	 * @param scn the SCN the standby must have applied, null if the reads need the primary
+	 * @param primary the primary session to read from if the standby cannot be used
+	 * @return a standby session or the primary session
+	 */
+	private Connection getReadConnection(Long scn, Connection primary) throws ConnectorRuntimeException {
+		if (standbypool == null || scn == null) {
+			return primary;
+		}
+		Connection standby = standbypool.acquire();
+		try (PreparedStatement stmt = standby.prepareStatement("select current_scn from v$database");) {
+			long start = System.currentTimeMillis();
+			while (true) {
+				long appliedscn = 0L;
+				try (ResultSet rs = stmt.executeQuery();) {
+					if (rs.next()) {
+						appliedscn = rs.getLong(1);
+					}
+				}
+				if (appliedscn >= scn) {
+					logger.debug("Reading from the standby, it applied SCN {} and SCN {} is required", appliedscn, scn);
+					return standby;
+				} else if (System.currentTimeMillis() - start > STANDBY_MAX_WAIT_MILLIS) {
+					logger.info("Standby lags behind, it applied SCN {} but SCN {} is required, reading from the primary", appliedscn, scn);
+					break;
+				}
+				Thread.sleep(500);
+			}
 		} catch (SQLException e) {
-			throw new ConnectorRuntimeException("Failed to turn off autocommit in the JDBC driver", e, 
-					"How could that happen?!?", "conn.setAutoCommit(false);");
+			logger.info("Cannot read the applied SCN of the standby, reading from the primary", e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		standbypool.release(standby);
+		return primary;
+	}
+
+	/**
+	 * @param readconn the session returned by {@link #getReadConnection(Long, Connection)}, null is ignored
+	 * @param primary the primary session passed to {@link #getReadConnection(Long, Connection)}
+	 */
+	private void releaseReadConnection(Connection readconn, Connection primary) {
+		if (readconn != null && readconn != primary) {
+			standbypool.release(readconn);
 		}
 	}
 	
@@ -90,16 +215,42 @@ public class OracleProducer extends Producer<OracleConnectionProperties, OracleP
 				+ "  TABLE_NAME nvarchar2(256) )";
 	}
 
+	/**
+	 * The SCN each producer has committed, so the PKLOG purge of any server keeps the rows not processed by all producers,
+	 * see {@link SharedChangeReader#purge(Connection)}.
+	 */
+	public static String getPKLOGWatermarkTable() {
+		return "create table PKLOG_WATERMARK (\r\n"
+				+ "  SUBSCRIBER nvarchar2(256) primary key, \r\n"
+				+ "  SCN number(19), \r\n"
+				+ "  CHANGE_TS timestamp )";
+	}
+
+	/**
+	 * The deduplicated primary keys of one poll, the rows are removed by the commit at the end of the poll.
+	 */
+	public static String getPKSTAGETable() {
+		return "create global temporary table PKSTAGE (\r\n"
+				+ "  SCHEMA_NAME nvarchar2(256), \r\n"
+				+ "  TABLE_NAME nvarchar2(256), \r\n"
+				+ "  SCN number(19), \r\n"
+				+ "  PK1 nvarchar2(256), \r\n"
+				+ "  PK2 nvarchar2(256), \r\n"
+				+ "  PK3 nvarchar2(256), \r\n"
+				+ "  PK4 nvarchar2(256), \r\n"
+				+ "  PK5 nvarchar2(256), \r\n"
+				+ "  PK6 nvarchar2(256) ) \r\n"
+				+ "on commit delete rows";
+	}
+
 	@Override
 	public void startProducerChangeLogging() throws IOException {
 		/*
 		 * create trigger if not exists and the global log table
 		 */
 		String sql = null;
+		leaseConnection();
 		try {
-			if (conn == null || conn.isClosed()) {
-				setConnection();
-			}
 			if (!OracleTableMapping.checktable("PKLOG", conn)) {
 				
 				sql = getPKLOGTable();
@@ -108,16 +259,67 @@ public class OracleProducer extends Producer<OracleConnectionProperties, OracleP
 				}
 				logger.debug("Created the PKLOG table: {}", sql);
 			}
+			if (!OracleTableMapping.checktable("PKLOG_WATERMARK", conn)) {
+				sql = getPKLOGWatermarkTable();
+				try (PreparedStatement stmt = conn.prepareStatement(sql);) {
+					stmt.execute();
+				}
+				logger.debug("Created the PKLOG_WATERMARK table: {}", sql);
+			}
+			if (getProducerProperties().isPKStaging() && !OracleTableMapping.checktable("PKSTAGE", conn)) {
+				sql = getPKSTAGETable();
+				try (PreparedStatement stmt = conn.prepareStatement(sql);) {
+					stmt.execute();
+				}
+				logger.debug("Created the PKSTAGE table: {}", sql);
+			}
 			List<String> sources = getProducerProperties().getSourceSchemas();
 			if (sources != null) {
+				List<OracleTableMapping> mappings = new ArrayList<>();
+				List<OracleTableMapping> tables = new ArrayList<>();
 				for (String sourceschema : sources) {
 					OracleTableMapping obj = schemadirectory.get(sourceschema);
-					obj.createDeltaObjects();
+					mappings.add(obj);
+					tables.addAll(obj.getAllTableMappings()); // child tables need the change logging triggers as well
+				}
+				deployTriggers(tables);
+				for (OracleTableMapping obj : mappings) {
+					obj.createSelects();
 				}
 			}
 		} catch (SQLException e) {
 			throw new ConnectorRuntimeException("Creating the Change Logging objects failed in the database", e, 
 					"Execute the sql as Hana user \"" + getConnectionProperties().getUsername() + "\"", sql);
+		} finally {
+			releaseConnection();
+		}
+	}
+
+	/**
+	 * Create missing and replace outdated triggers in parallel. All tables are deployed, but if any of them failed, the
+	 * changes of its mappings would not be logged, hence an exception listing all failed tables is thrown afterwards.
+	 * The triggers' WHEN clause considers the mappings of all producers of the connection reading the same tables.
+	 */
+	private void deployTriggers(List<OracleTableMapping> tables) throws IOException {
+		TriggerDeploymentPlanner planner = new TriggerDeploymentPlanner(conn);
+		TriggerDeploymentPlan plan;
+		try (OracleBrowse browser = new OracleBrowse(getConnectionController());) {
+			plan = planner.createPlan(tables, browser.getTriggerConditions(), false);
+		}
+		if (plan.getActionCount() != 0) {
+			logger.debug("Deploying {} trigger changes", plan.getActionCount());
+			planner.apply(plan, getConnectionProperties(), getConnectionProperties().getDDLParallelism(), false);
+			StringBuffer failed = new StringBuffer();
+			for (TableDeployment t : plan.getTables()) {
+				if (t.getError() != null) {
+					logger.error("Creating the change logging triggers for table {} failed: {}", t.toString(), t.getError());
+					failed.append(t.toString()).append(": ").append(t.getError()).append("\r\n");
+				}
+			}
+			if (failed.length() != 0) {
+				throw new ConnectorRuntimeException("Creating the change logging triggers failed for " + plan.getErrorCount() + " tables", null,
+						"Check the permissions and the trigger script of these tables", failed.toString());
+			}
 		}
 	}
 
@@ -125,7 +327,12 @@ public class OracleProducer extends Producer<OracleConnectionProperties, OracleP
 	public void createTopiclist() throws IOException {
 		TopicName t = TopicName.create(getProducerProperties().getTopicName());
 		logger.debug("Create the topic for the topicname {} if it does not exist yet, actual Kafka topic name (encoded) is {}", t.getName(), t.getEncodedName());
-		topic = getPipelineAPI().getTopicOrCreate(t, 1, (short) 1);
+		topic = getPipelineAPI().getTopicOrCreate(t, getProducerProperties().getPartitions(), (short) getProducerProperties().getReplication());
+		if (topic.getTopicMetadata() != null) {
+			partitioncount = topic.getTopicMetadata().getPartitionCount();
+		} else {
+			partitioncount = getProducerProperties().getPartitions();
+		}
 		List<String> sources = getProducerProperties().getSourceSchemas();
 		if (sources != null) {
 			for (String sourcetablename : sources) {
@@ -140,10 +347,162 @@ public class OracleProducer extends Producer<OracleConnectionProperties, OracleP
 
 	@Override
 	public void startProducerCapture() throws IOException {
+		getChangeReader();
+		leaseConnection();
+		try {
+			driftdetector.getChangedTables(conn); // read the current DDL times, so the first poll does not refresh all mappings
+		} finally {
+			releaseConnection();
+		}
 	}
 
+	/**
+	 * Continue from the SCN the pipeline has stored. If the PKLOG still contains all changes since then, nothing needs to be done as
+	 * the next poll starts from that SCN. Otherwise only the mappings with tables possibly modified since that SCN, see
+	 * {@link #getTablesChangedSince(long)}, are re-read entirely by the next poll, including deletes for the rows existing as of
+	 * that SCN but not any longer.
+	 * As this needs a flashback query as of the restart SCN, a mapping with child tables or an SCN older than the undo retention
+	 * cannot be recovered that way and requires an initial load instead.
+	 */
 	@Override
 	public void restartWith(String lastsourcetransactionid) throws IOException {
+		long scn;
+		try {
+			scn = Long.valueOf(lastsourcetransactionid);
+		} catch (NumberFormatException e) {
+			logger.info("Restart transaction id \"{}\" is not an SCN, nothing to recover", lastsourcetransactionid);
+			return;
+		}
+		clearRowCaches();
+		reloadrequired.clear();
+		watermarks.clear();
+		lastpolls.clear();
+		String sql = null;
+		leaseConnection();
+		try {
+			if (isPKLOGCovering(scn)) {
+				logger.info("Restarting from SCN {}, the PKLOG contains all changes since", scn);
+			} else {
+				sql = SELECT_MODIFIED_TABLES;
+				Set<String> changed = getTablesChangedSince(scn);
+				for (OracleTableMapping obj : schemadirectory.values()) {
+					for (OracleTableMapping table : obj.getAllTableMappings()) {
+						if (changed == null || changed.contains(SchemaDriftDetector.getKey(table.getOracleowner(), table.getOracletablename()))) {
+							reloadrequired.add(obj);
+							break;
+						}
+					}
+				}
+				for (OracleTableMapping obj : reloadrequired) {
+					validateReload(obj, scn);
+				}
+				reloadscn = scn;
+				logger.info("Restarting from SCN {} but the PKLOG got purged since, mappings {} will be re-read", scn, reloadrequired.toString());
+			}
+		} catch (SQLException e) {
+			throw new ConnectorRuntimeException("Validating the restart SCN failed", e, "Any idea?", sql);
+		} finally {
+			releaseConnection();
+		}
+		getChangeReader().commit(getSubscriberName(), scn);
+	}
+
+	/**
+	 * Which tables got modified since the SCN is decided by dictionary data only, reading the tables themselves would be a full
+	 * scan of every unchanged table. A table is considered changed, which means it might have been changed, if
+	 * <ul>
+	 * <li>the PKLOG has rows of the table after the SCN. The PKLOG keeps the changes of the last 7 days at least, hence these
+	 * cover the changes not yet flushed to the DML monitoring information.</li>
+	 * <li>the DML monitoring information of all_tab_modifications has a timestamp after the SCN's time.</li>
+	 * <li>the optimizer statistics got gathered since the SCN's time, as this resets the DML monitoring information.</li>
+	 * </ul>
+	 * 
+	 * @return the keys of the changed tables, see {@link SchemaDriftDetector#getKey(String, String)}, or null if the time of the SCN
+	 * is not known any longer and hence every table is considered changed
+	 */
+	private Set<String> getTablesChangedSince(long scn) throws SQLException {
+		Set<String> changed = new HashSet<>();
+		try (PreparedStatement stmt = conn.prepareStatement("select scn_to_timestamp(?) from dual");) {
+			stmt.setLong(1, scn);
+			try (ResultSet rs = stmt.executeQuery();) {
+				rs.next();
+			}
+		} catch (SQLException e) {
+			logger.info("The time of SCN {} is not known any longer, all mappings are re-read", scn);
+			return null;
+		}
+		try (PreparedStatement stmt = conn.prepareStatement("select distinct schema_name, table_name from pklog where scn > ?");) {
+			stmt.setLong(1, scn);
+			try (ResultSet rs = stmt.executeQuery();) {
+				while (rs.next()) {
+					changed.add(SchemaDriftDetector.getKey(rs.getString(1), rs.getString(2)));
+				}
+			}
+		}
+		try (PreparedStatement stmt = conn.prepareStatement(SELECT_MODIFIED_TABLES);) {
+			for (OracleTableMapping obj : schemadirectory.values()) {
+				for (OracleTableMapping table : obj.getAllTableMappings()) {
+					String key = SchemaDriftDetector.getKey(table.getOracleowner(), table.getOracletablename());
+					if (!changed.contains(key)) {
+						stmt.setLong(1, scn);
+						stmt.setLong(2, scn);
+						stmt.setString(3, table.getOracleowner());
+						stmt.setString(4, table.getOracletablename());
+						try (ResultSet rs = stmt.executeQuery();) {
+							if (rs.next()) {
+								changed.add(key);
+							}
+						}
+					}
+				}
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Deletes can be found by the reload only if the table can be read as of the restart SCN
+	 */
+	private void validateReload(OracleTableMapping obj, long scn) throws ConnectorRuntimeException {
+		if (obj.getReloadDeleteSelect() == null) {
+			throw new ConnectorRuntimeException("The changes since the restart SCN got purged and the mapping cannot be re-read including the deleted rows", null,
+					"Execute an initial load of the mapping", obj.getName());
+		}
+		String sql = "select 1 from \"" + obj.getOracleowner() + "\".\"" + obj.getOracletablename() + "\" as of scn ? where rownum = 1";
+		try (PreparedStatement stmt = conn.prepareStatement(sql);) {
+			stmt.setLong(1, scn);
+			try (ResultSet rs = stmt.executeQuery();) {
+				rs.next();
+			}
+		} catch (SQLException e) {
+			throw new ConnectorRuntimeException("The changes since the restart SCN got purged and the table cannot be read as of that SCN to find the deleted rows", e,
+					"Execute an initial load of the mapping", sql);
+		}
+	}
+
+	/**
+	 * The purge removes PKLOG rows older than 7 days and below the lowest SCN of all producers. Hence the PKLOG is complete
+	 * from the SCN onwards if older rows still exist or the SCN is younger than 7 days.
+	 */
+	private boolean isPKLOGCovering(long scn) throws SQLException {
+		try (PreparedStatement stmt = conn.prepareStatement("select min(scn) from pklog");) {
+			try (ResultSet rs = stmt.executeQuery();) {
+				if (rs.next()) {
+					long minscn = rs.getLong(1);
+					if (!rs.wasNull() && minscn <= scn) {
+						return true;
+					}
+				}
+			}
+		}
+		try (PreparedStatement stmt = conn.prepareStatement("select timestamp_to_scn(systimestamp - interval '7' day) from dual");) {
+			try (ResultSet rs = stmt.executeQuery();) {
+				return rs.next() && rs.getLong(1) < scn;
+			}
+		} catch (SQLException e) {
+			logger.info("SCN of 7 days ago is not known, assuming the PKLOG got purged since SCN {}", scn);
+			return false;
+		}
 	}
 
 	@Override
@@ -153,246 +512,382 @@ public class OracleProducer extends Producer<OracleConnectionProperties, OracleP
 
 	@Override
 	public void closeImpl() {
-		if (conn != null) {
-			try {
-				conn.close();
-			} catch (SQLException e) {
-				logger.info("Oracle connection close failed - ignored", e);
-			}
+		if (changereader != null) {
+			changereader.unsubscribe(getSubscriberName());
+			changereader = null;
 		}
 	}
 
 	@Override
 	protected Schema createSchema(String sourceschema) throws SchemaBuilderException, IOException {
+		leaseConnection();
 		try (OracleBrowse browser = new OracleBrowse(getConnectionController());) {
 			OracleTableMapping obj = OracleTableMapping.readDefinition(username, sourceschema, conn, browser.getBusinessObjectDirectory());
 			logger.debug("Mapping File with name {} read for Hana table {}", sourceschema, obj.getOracletablename());
 			schemadirectory.put(sourceschema, obj);
-			List<OracleTableMapping> t = tabledirectory.get(obj.getOracletablename());
-			if (t == null) {
-				t = new ArrayList<>();
-				tabledirectory.put(obj.getOracletablename(), t);
+			/*
+			 * A change in a child table requires the root object to be recreated
+			 */
+			for (OracleTableMapping table : obj.getAllTableMappings()) {
+				List<OracleTableMapping> t = tabledirectory.get(table.getOracletablename());
+				if (t == null) {
+					t = new ArrayList<>();
+					tabledirectory.put(table.getOracletablename(), t);
+				}
+				if (!t.contains(obj)) {
+					t.add(obj);
+				}
+			}
+			driftdetector.register(obj);
+			routers.put(obj, new PartitionRouter(obj));
+			if (obj.isDeduplicate()) {
+				rowcaches.put(obj, new RowHashCache(obj, 0));
+			} else {
+				rowcaches.remove(obj);
 			}
-			t.add(obj);
 			return obj.getAvroSchema();
+		} finally {
+			releaseConnection();
 		}
 	}
 
-	private JexlRecord convert(ResultSet rs, Schema schema) throws SQLException, IOException, SchemaBuilderException {
-		JexlRecord r = new JexlRecord(schema);
-		for (int i=3; i<= rs.getMetaData().getColumnCount(); i++) {
-			String columnname = rs.getMetaData().getColumnLabel(i);
-			String avrofieldname = AvroNameEncoder.encodeName(columnname);
-			int datatype = rs.getMetaData().getColumnType(i);
-			JDBCType t = JDBCType.valueOf(datatype);
-			switch (t) {
-			case BIGINT:
-				r.put(avrofieldname, rs.getLong(i));
-				break;
-			case BINARY:
-				r.put(avrofieldname, rs.getBytes(i));
-				break;
-			case BLOB:
-				r.put(avrofieldname, rs.getBytes(i));
-				break;
-			case BOOLEAN:
-				r.put(avrofieldname, rs.getBoolean(i));
-				break;
-			case CHAR:
-				r.put(avrofieldname, trim(rs.getString(i)));
-				break;
-			case CLOB:
-				r.put(avrofieldname, trim(rs.getString(i)));
-				break;
-			case DATE:
-				r.put(avrofieldname, rs.getDate(i));
-				break;
-			case DECIMAL:
-				r.put(avrofieldname, rs.getBigDecimal(i));
-				break;
-			case DOUBLE:
-				r.put(avrofieldname, rs.getDouble(i));
-				break;
-			case FLOAT:
-				r.put(avrofieldname, rs.getFloat(i));
-				break;
-			case INTEGER:
-				r.put(avrofieldname, rs.getInt(i));
-				break;
-			case LONGNVARCHAR:
-				r.put(avrofieldname, trim(rs.getString(i)));
-				break;
-			case LONGVARBINARY:
-				r.put(avrofieldname, rs.getBytes(i));
-				break;
-			case LONGVARCHAR:
-				r.put(avrofieldname, trim(rs.getString(i)));
-				break;
-			case NCHAR:
-				r.put(avrofieldname, trim(rs.getString(i)));
-				break;
-			case NCLOB:
-				r.put(avrofieldname, trim(rs.getString(i)));
-				break;
-			case ROWID:
-				r.put(avrofieldname, rs.getString(i));
-				break;
-			case NVARCHAR:
-				r.put(avrofieldname, trim(rs.getString(i)));
-				break;
-			case REAL:
-				r.put(avrofieldname, rs.getFloat(i));
-				break;
-			case NUMERIC: {
-				IAvroDatatype d = AvroType.getAvroDataType(schema.getField(avrofieldname).schema());
-				r.put(avrofieldname, d.convertToInternal(rs.getObject(i)));
-				break; }
-			case SMALLINT:
-				r.put(avrofieldname, rs.getInt(i));
-				break;
-			case TIME:
-				r.put(avrofieldname, rs.getTime(i));
-				break;
-			case TIMESTAMP:
-				r.put(avrofieldname, rs.getTimestamp(i));
-				break;
-			case TIMESTAMP_WITH_TIMEZONE:
-				r.put(avrofieldname, rs.getTimestamp(i));
-				break;
-			case TIME_WITH_TIMEZONE:
-				r.put(avrofieldname, rs.getTimestamp(i));
-				break;
-			case TINYINT:
-				r.put(avrofieldname, rs.getInt(i));
-				break;
-			case VARBINARY:
-				r.put(avrofieldname, rs.getBytes(i));
-				break;
-			case VARCHAR:
-				r.put(avrofieldname, trim(rs.getString(i)));
-				break;
-			default:
-				throw new ConnectorRuntimeException("The select statement returns a datatype the connector cannot handle", null, 
-						"Please create an issue", rs.getMetaData().getColumnName(i) + ":" + t.getName());
-			}
-			if (rs.wasNull()) {
-				r.put(avrofieldname, null);
-			}
-		}
-		return r;
-	}
-
-	private String trim(String value) {
-		if (value == null || value.length() == 0) {
-			return null;
-		} else {
-			return value;
+	/**
+	 * @return the schema handler of the mapping, the refreshed one if the mapping changed since the start
+	 */
+	private SchemaHandler getSchemaHandler(OracleTableMapping obj) throws IOException {
+		SchemaHandler handler = refreshedschemas.get(obj.getName());
+		if (handler == null) {
+			handler = getSchema(obj.getName());
 		}
+		return handler;
 	}
-	
-	private long getMaxTransactionId(long min_transactionid) throws ConnectorRuntimeException {
-		long max_transactionid = 0L;
-		String sql = "select nvl(min(start_scn), dbms_flashback.get_system_change_number) from gv$transaction";
-		try (PreparedStatement transactionlimitstmt = conn.prepareStatement(sql);) {
-			ResultSet rs = transactionlimitstmt.executeQuery();
-			if (rs.next()) {
-				max_transactionid = rs.getLong(1);
-			} else {
-				max_transactionid = min_transactionid; // given above sql this cannot happen
+
+	/**
+	 * Check all source tables for DDL changes with a single query. For each changed table the column definition is re-read and,
+	 * if the columns or the primary key are different, the triggers and selects of the impacted mappings are regenerated,
+	 * the new schema version is registered and the mapping file updated. Mappings of unchanged tables are not touched.
+	 */
+	private void refreshChangedMappings() throws IOException {
+		Set<String> changed = driftdetector.getChangedTables(conn);
+		if (changed.size() == 0 && pendingtriggers.size() == 0) {
+			return;
+		}
+		logger.info("Tables {} got altered, checking the mappings", changed.toString());
+		Set<OracleTableMapping> impacted = new HashSet<>();
+		List<OracleTableMapping> tables = new ArrayList<>();
+		for (OracleTableMapping obj : schemadirectory.values()) {
+			for (OracleTableMapping table : obj.getAllTableMappings()) {
+				if (pendingtriggers.contains(table)
+						|| (changed.contains(SchemaDriftDetector.getKey(table.getOracleowner(), table.getOracletablename()))
+						&& !tables.contains(table) && table.refreshColumns())) {
+					tables.add(table);
+					impacted.add(obj);
+				}
 			}
-		} catch (SQLException e) {
-			throw new ConnectorRuntimeException("Selecting the upper bound SCN failed", e, 
-					"Missing permissions on Oracle dictinary view gv$transaction?", sql);
 		}
+		if (impacted.size() == 0) {
+			return;
+		}
+		/*
+		 * The columns got refreshed already, so if the triggers cannot be deployed, the poll fails until they can.
+		 */
+		pendingtriggers = tables;
+		deployTriggers(tables);
+		pendingtriggers = new ArrayList<>();
+		try (OracleBrowse browser = new OracleBrowse(getConnectionController());) {
+			for (OracleTableMapping obj : impacted) {
+				obj.createSelects();
+				Schema schema = obj.getAvroSchema();
+				SchemaHandler handler = getPipelineAPI().registerSchema(SchemaName.create(obj.getName()), null, KeySchema.create(schema), schema);
+				addTopicSchema(topic, handler);
+				refreshedschemas.put(obj.getName(), handler);
+				routers.put(obj, new PartitionRouter(obj));
+				if (rowcaches.containsKey(obj)) {
+					rowcaches.put(obj, new RowHashCache(obj, 0)); // the row images changed anyhow
+				}
+				obj.write(browser.getBusinessObjectDirectory());
+				logger.info("Mapping \"{}\" got a new schema version because of a table definition change", obj.getName());
+			}
+		} catch (SchemaBuilderException e) {
+			throw new ConnectorRuntimeException("Creating the new schema version failed", e, null, impacted.toString());
+		}
+		driftdetector.getChangedTables(conn); // the trigger changes modified the last_ddl_time as well
+	}
+
+	/**
+	 * Send the record unless it is identical to the last one sent for the same primary key
+	 * 
+	 * @return true if the record was sent
+	 */
+	private boolean sendRow(OracleTableMapping obj, SchemaHandler schemahandler, JexlRecord r, RowType rowtype) throws IOException {
+		RowHashCache cache = rowcaches.get(obj);
+		if (cache != null) {
+			if (rowtype == RowType.DELETE) {
+				cache.remove(r);
+			} else if (!cache.put(r)) {
+				return false;
+			}
+		}
+		addRow(topic, getPartition(obj, r), schemahandler, r, rowtype, null, getProducerProperties().getName());
+		return true;
+	}
+
+	/**
+	 * Records of a transaction not committed were not sent, hence the caches do not reflect what the consumers got
+	 */
+	private void clearRowCaches() {
+		for (RowHashCache cache : rowcaches.values()) {
+			cache.clear();
+		}
+	}
+
+	private Integer getPartition(OracleTableMapping obj, JexlRecord r) {
+		PartitionRouter router = routers.get(obj);
+		return router == null ? null : router.getPartition(r, partitioncount);
+	}
+
+	/**
+	 * The reader shared with all other producers using the same database user and hence the same PKLOG table
+	 */
+	private SharedChangeReader getChangeReader() {
+		if (changereader == null) {
+			changereader = SharedChangeReader.subscribe(getConnectionProperties(), getSubscriberName());
+		}
+		return changereader;
+	}
+
+	private String getSubscriberName() {
+		return getProducerProperties().getName() + "#" + instance.getInstanceNumber();
+	}
+
+	private SharedChangeReader.UpperBound getMaxTransactionId(long min_transactionid) throws ConnectorRuntimeException {
+		SharedChangeReader.UpperBound max_transactionid = getChangeReader().getUpperBound(conn, min_transactionid);
 		logger.debug("Upper bound SCN in Oracle is \"{}\", read everything less than", max_transactionid);
 		return max_transactionid;
 	}
 
+	/**
+	 * The delta of a new mapping starts at the same upper bound a poll would use, the oldest SCN of all open transactions.
+	 * A transaction open right now commits after its changes were logged, hence starting at the current SCN would miss them.
+	 */
 	@Override
 	public String getCurrentTransactionId() throws ConnectorRuntimeException {
-		long current_transactionid = 0L;
+		leaseConnection();
+		try {
+			long current_transactionid = getChangeReader().getUpperBound(conn, 0L).getSCN();
+			logger.debug("Delta start SCN in Oracle is \"{}\"", current_transactionid);
+			return String.valueOf(current_transactionid);
+		} finally {
+			releaseConnection();
+		}
+	}
+
+	/**
+	 * @param c the session to ask
+	 * @return the current SCN of the database
+	 * @throws ConnectorRuntimeException if the SCN cannot be read
+	 */
+	private static long getCurrentSCN(Connection c) throws ConnectorRuntimeException {
 		String sql = "select dbms_flashback.get_system_change_number from dual";
-		try (PreparedStatement transactionlimitstmt = conn.prepareStatement(sql);) {
-			ResultSet rs = transactionlimitstmt.executeQuery();
-			if (rs.next()) {
-				current_transactionid = rs.getLong(1);
-			}
+		try (PreparedStatement stmt = c.prepareStatement(sql);
+				ResultSet rs = stmt.executeQuery();) {
+			return rs.next() ? rs.getLong(1) : 0L;
 		} catch (SQLException e) {
 			throw new ConnectorRuntimeException("Selecting the current SCN failed", e, 
 					"Missing permissions on dbms_flashback.get_system_change_number package?", sql);
 		}
-		logger.debug("Current SCN in Oracle is \"{}\"", current_transactionid);
-		return String.valueOf(current_transactionid);
 	}
 
 	@Override
 	public String poll(String from_transaction) throws IOException {
+		leaseConnection();
+		try {
+			return pollChanges(from_transaction);
+		} finally {
+			releaseConnection();
+		}
+	}
+
+	/**
+	 * @return the poll interval of the mapping in seconds, 0 if extracted by every poll
+	 */
+	private static int getPollClass(OracleTableMapping obj) {
+		Integer interval = obj.getPollinterval();
+		return interval == null || interval < 0 ? 0 : interval;
+	}
+
+	private String pollChanges(String from_transaction) throws IOException {
+		refreshChangedMappings();
 		long min_transactionid = Long.valueOf(from_transaction);
-		long max_transactionid = getMaxTransactionId(min_transactionid);
+		SharedChangeReader.UpperBound upperbound = getMaxTransactionId(min_transactionid);
+		long max_transactionid = upperbound.getSCN();
 		String sql = null;
+		Connection readconn = null;
+		/*
+		 * Mappings with a poll interval are extracted only when due, each poll class continuing from its own SCN.
+		 * The position returned, and used as transaction id, is the lowest SCN of all classes. Hence after a restart
+		 * no change of a class not due is lost, the changes of the other classes might be sent twice.
+		 */
+		long now = System.currentTimeMillis();
+		Set<Integer> dueclasses = new HashSet<>();
+		Set<Integer> allclasses = new HashSet<>();
+		long from_due = max_transactionid;
+		for (OracleTableMapping obj : schemadirectory.values()) {
+			int pollclass = getPollClass(obj);
+			allclasses.add(pollclass);
+			Long watermark = watermarks.get(pollclass);
+			if (watermark == null || watermark < min_transactionid) {
+				watermark = min_transactionid;
+				watermarks.put(pollclass, watermark);
+			}
+			Long lastpoll = lastpolls.get(pollclass);
+			if (pollclass == 0 || lastpoll == null || now - lastpoll >= pollclass * 1000L || reloadrequired.contains(obj)) {
+				dueclasses.add(pollclass);
+				from_due = Math.min(from_due, watermark);
+			}
+		}
+		watermarks.keySet().retainAll(allclasses);
+		long position = max_transactionid;
+		for (Map.Entry<Integer, Long> entry : watermarks.entrySet()) {
+			if (!dueclasses.contains(entry.getKey())) {
+				position = Math.min(position, entry.getValue());
+			}
+		}
 		
-		if (min_transactionid != max_transactionid) { // If Hana has not processed a single record anywhere, no need to check for data
-			logger.debug("Reading change data from Hana transaction id \"{}\" to transaction id \"{}\"", min_transactionid, max_transactionid);
+		if (from_due < max_transactionid) { // If Hana has not processed a single record anywhere, no need to check for data
+			logger.debug("Reading change data from Hana transaction id \"{}\" to transaction id \"{}\" for the poll classes {}", from_due, max_transactionid, dueclasses);
+			boolean uncommitted = false;
 			try {
-				sql = "select distinct table_name from PKLOG where scn > ? and scn < ?";
 				Set<OracleTableMapping> impacted = new HashSet<>();
-				try (PreparedStatement logtablesstmt = conn.prepareStatement(sql);) {
-					logtablesstmt.setLong(1, min_transactionid);
-					logtablesstmt.setLong(2, max_transactionid);
-					
-					/*
-					 * Read all tables that got changed and translate that to the master tables to be read.
-					 * For example the item table got changed and hence the order object has to be recreated.
-					 */
-					try (ResultSet logtablesrs = logtablesstmt.executeQuery();) {
-						while (logtablesrs.next()) {
-							String changetable = logtablesrs.getString(1);
-							List<OracleTableMapping> t = tabledirectory.get(changetable);
-							if (t != null) {
-								impacted.addAll(t);
+				/*
+				 * Read all tables that got changed and translate that to the master tables to be read.
+				 * For example the item table got changed and hence the order object has to be recreated.
+				 */
+				for (String changetable : getChangeReader().getChangedTables(conn, from_due, max_transactionid)) {
+					List<OracleTableMapping> t = tabledirectory.get(changetable);
+					if (t != null) {
+						for (OracleTableMapping obj : t) {
+							if (dueclasses.contains(getPollClass(obj))) {
+								impacted.add(obj);
 							}
 						}
 					}
 				}
+				impacted.addAll(reloadrequired);
 				if (impacted.size() > 0) {
 					logger.debug("Found changes for mappings \"{}\"", impacted.toString());
-					beginDeltaTransaction(String.valueOf(max_transactionid), instance.getInstanceNumber());
+					beginDeltaTransaction(String.valueOf(position), instance.getInstanceNumber());
+					uncommitted = true;
+					/*
+					 * Transactions with PKLOG rows below the upper bound can commit after it, but not after the primary's SCN sampled
+					 * together with it. Once the standby applied that SCN, its PKLOG and tables contain all changes of the window.
+					 * The staging table is a temporary table of the primary session, hence is not used when reading from the standby.
+					 */
+					readconn = getReadConnection(upperbound.getCurrentSCN(), conn);
+					Map<String, Long> staged = new HashMap<>();
+					boolean staging = getProducerProperties().isPKStaging() && readconn == conn;
+					/*
+					 * Mappings of different poll classes have different lower bounds, the table's keys are staged for the lowest
+					 * and each mapping reads the keys changed above its own lower bound.
+					 */
+					Map<String, Long> stagingfrom = new HashMap<>();
+					for (OracleTableMapping obj : impacted) {
+						stagingfrom.merge(obj.getTableKey(), watermarks.get(getPollClass(obj)), Math::min);
+					}
 					for (OracleTableMapping obj : impacted) {
-						String currentschema = obj.getName();
-						sql = obj.getDeltaSelect();
-						try (PreparedStatement stmt = conn.prepareStatement(sql);) {
-							stmt.setLong(1, min_transactionid);
-							stmt.setLong(2, max_transactionid);
+						SchemaHandler schemahandler = getSchemaHandler(obj);
+						long from_transactionid = watermarks.get(getPollClass(obj));
+						if (reloadrequired.contains(obj)) {
+							sql = obj.getSnapshotSelect();
+							executeReload(readconn, obj, schemahandler, upperbound);
+							continue;
+						}
+						if (isCatchupRequired(obj, from_transactionid, max_transactionid)) {
+							sql = obj.getSnapshotSelect();
+							executeCatchup(readconn, obj, schemahandler, from_transactionid, upperbound);
+							continue;
+						}
+						boolean usestaging = staging && obj.supportsStaging();
+						if (usestaging) {
+							/*
+							 * The keys of a table are grouped once, all mappings of the table read the staged keys
+							 */
+							String key = obj.getTableKey();
+							Long stagedrows = staged.get(key);
+							if (stagedrows == null) {
+								sql = obj.getStagingInsert();
+								try (PreparedStatement stmt = conn.prepareStatement(sql);) {
+									stmt.setLong(1, stagingfrom.get(key));
+									stmt.setLong(2, max_transactionid);
+									stagedrows = (long) stmt.executeUpdate();
+								}
+								staged.put(key, stagedrows);
+								logger.debug("Staged {} changed keys of table {}", stagedrows, key);
+							}
+							sql = obj.getStagedDeltaSelect(stagedrows);
+						} else {
+							sql = obj.getDeltaSelect();
+						}
+						try (PreparedStatement stmt = readconn.prepareStatement(sql);) {
+							if (usestaging) {
+								stmt.setLong(1, from_transactionid);
+							} else {
+								obj.setDeltaParameters(stmt, from_transactionid, max_transactionid);
+							}
 							try (ResultSet rs = stmt.executeQuery(); ) {
-								while (rs.next()) {
-									JexlRecord r = convert(rs, obj.getAvroSchema());
-					    			RowType rowtype;
-					    			switch (rs.getString(1)) {
-					    			case "D": 
-					    				rowtype = RowType.DELETE;
-					    				break;
-					    			default: 
-					    				rowtype = RowType.UPSERT;
-					    			}
-					    			addRow(topic, null, getSchema(currentschema), r, rowtype, null, getProducerProperties().getName());
-					    			logger.debug("Sending row {}", r.toString());
+								RowConverter converter = new RowConverter(rs.getMetaData(), obj, getProducerProperties());
+								BusinessObjectAssembler assembler;
+								if (obj.hasChildtables()) {
+									assembler = new BusinessObjectAssembler(readconn, obj, getProducerProperties(),
+											(r, rowtype) -> sendRow(obj, schemahandler, r, rowtype));
+								} else {
+									assembler = null;
+								}
+								RowPipeline.execute(rs,
+										(row) -> new RowPipeline.Row(converter.convert(row),
+												"D".equals(row.getString(1)) ? RowType.DELETE : RowType.UPSERT,
+												assembler != null ? row.getString(3) : null),
+										(r, rowtype, rowid) -> {
+											if (assembler != null) {
+												assembler.add(r, rowtype, rowid);
+											} else if (sendRow(obj, schemahandler, r, rowtype)) {
+												logger.debug("Sending row {}", r.toString());
+											}
+										},
+										getProducerProperties().isPipelined());
+								if (assembler != null) {
+									assembler.flush();
 								}
 							}
 						}
 					}
 					
 					commitDeltaTransaction();
+					uncommitted = false;
 					conn.commit();
+					reloadrequired.clear();
 				}
-				logger.debug("Moved min transaction id to \"{}\" as new starting point", max_transactionid);
-				return String.valueOf(max_transactionid);
+				for (Integer pollclass : dueclasses) {
+					watermarks.put(pollclass, max_transactionid);
+					lastpolls.put(pollclass, now);
+				}
+				getChangeReader().commit(getSubscriberName(), position);
+				logger.debug("Moved min transaction id to \"{}\" as new starting point", position);
+				return String.valueOf(position);
 			} catch (SQLException e) {
 				abortTransaction();
+				rollback();
 				throw new ConnectorRuntimeException("Selecting the changes ran into an error", e, "Any idea?", sql);
 			} catch (SchemaBuilderException e) {
 				abortTransaction();
+				rollback();
 				throw new ConnectorRuntimeException("Selecting the changes ran into an error with the schema", e, 
 						"Any idea?", null);
+			} finally {
+				if (uncommitted) {
+					clearRowCaches(); // whatever the error, e.g. an IOException sending the rows
+				}
+				releaseReadConnection(readconn, conn);
 			}
 		} else {
 			return from_transaction;
@@ -400,24 +895,143 @@ public class OracleProducer extends Producer<OracleConnectionProperties, OracleP
 	}
 
 	/**
-	 * Delete all old data from PKLOG and DELTAINFO
+	 * After a long outage the PKLOG can contain a large fraction of a table's rows. Then grouping the PKLOG and joining it
+	 * with the table is slower than re-reading the entire table. The ratio is estimated by counting the PKLOG rows, stopping
+	 * as soon as the threshold is reached, and the optimizer statistics of the table.
+	 * 
+	 * @return true if the threshold of the mapping or the producer is exceeded
 	 */
-	public void executePeriodicTask() throws ConnectorRuntimeException {
-		String sql = "delete from pklog where CHANGE_TS < current_timestamp - 7";
-		try (PreparedStatement stmt = conn.prepareStatement(sql);) {
-			stmt.execute();
-			logger.debug("Deleted outdated data from PKLOG");
-		} catch (SQLException e) {
-			throw new ConnectorRuntimeException("Deleting outdated data from the PKLOG table failed", e, 
-					"Any idea?", sql);
-		} finally {
-			try {
-				conn.commit();
-			} catch (SQLException e) {
-				logger.error("Failed ot commit", e);
+	private boolean isCatchupRequired(OracleTableMapping obj, long min_transactionid, long max_transactionid) throws SQLException {
+		if (obj.getSnapshotSelect() == null) {
+			return false;
+		}
+		Integer threshold = obj.getCatchupthreshold();
+		if (threshold == null) {
+			threshold = getProducerProperties().getCatchupThreshold();
+		}
+		if (threshold <= 0) {
+			return false;
+		}
+		long tablerows = 0;
+		try (PreparedStatement stmt = conn.prepareStatement("select num_rows from all_tables where owner = ? and table_name = ?");) {
+			stmt.setString(1, obj.getOracleowner());
+			stmt.setString(2, obj.getOracletablename());
+			try (ResultSet rs = stmt.executeQuery();) {
+				if (rs.next()) {
+					tablerows = rs.getLong(1);
+				}
+			}
+		}
+		if (tablerows <= 0) {
+			return false; // no statistics
+		}
+		long limit = tablerows * threshold / 100;
+		try (PreparedStatement stmt = conn.prepareStatement("select count(*) from (select 1 from pklog "
+				+ "where scn > ? and scn < ? and table_name = ? and schema_name = ? and rownum <= ?)");) {
+			stmt.setLong(1, min_transactionid);
+			stmt.setLong(2, max_transactionid);
+			stmt.setString(3, obj.getOracletablename());
+			stmt.setString(4, obj.getOracleowner());
+			stmt.setLong(5, limit + 1);
+			try (ResultSet rs = stmt.executeQuery();) {
+				return rs.next() && rs.getLong(1) > limit;
+			}
+		}
+	}
+
+	/**
+	 * Send the entire table as upserts plus all rows deleted within the SCN window. The next poll continues with the PKLOG
+	 * from the upper bound SCN onwards.<br>
+	 * The table is read as of the primary's current SCN sampled with the upper bound, not as of the upper bound itself.
+	 * Transactions with PKLOG rows below the upper bound might have committed after it, these would be neither part of
+	 * the snapshot nor of the next window.
+	 */
+	private void executeCatchup(Connection readconn, OracleTableMapping obj, SchemaHandler schemahandler, long min_transactionid,
+			SharedChangeReader.UpperBound upperbound) throws SQLException, IOException, SchemaBuilderException {
+		long snapshotscn = upperbound.getCurrentSCN();
+		logger.info("Mapping \"{}\" has a large backlog, re-reading the table as of SCN {}", obj.getName(), snapshotscn);
+		try (PreparedStatement stmt = readconn.prepareStatement(obj.getSnapshotSelect());
+				LoadGovernor.Lease lease = governor.acquire(readconn);) {
+			stmt.setLong(1, snapshotscn);
+			try (ResultSet rs = stmt.executeQuery();) {
+				RowConverter converter = new RowConverter(rs.getMetaData(), obj, getProducerProperties());
+				while (rs.next()) {
+					lease.row();
+					JexlRecord r = converter.convert(rs);
+					sendRow(obj, schemahandler, r, RowType.UPSERT);
+				}
+			}
+		}
+		try (PreparedStatement stmt = readconn.prepareStatement(obj.getCatchupDeleteSelect());) {
+			stmt.setLong(1, min_transactionid);
+			stmt.setLong(2, upperbound.getSCN());
+			stmt.setLong(3, snapshotscn);
+			try (ResultSet rs = stmt.executeQuery();) {
+				RowConverter converter = new RowConverter(rs.getMetaData(), obj, getProducerProperties());
+				while (rs.next()) {
+					JexlRecord r = converter.convert(rs);
+					sendRow(obj, schemahandler, r, RowType.DELETE);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Send the entire table as upserts plus all rows existing as of the restart SCN but not any longer. Like the catch-up,
+	 * the table is read as of the primary's current SCN sampled with the upper bound.
+	 * The restart validated the mapping supports flashback queries as of the restart SCN, see {@link #validateReload(OracleTableMapping, long)}.
+	 */
+	private void executeReload(Connection readconn, OracleTableMapping obj, SchemaHandler schemahandler, SharedChangeReader.UpperBound upperbound) throws SQLException, IOException, SchemaBuilderException {
+		long snapshotscn = upperbound.getCurrentSCN();
+		logger.info("Mapping \"{}\" is re-read as of SCN {} because its changes are not in the PKLOG any longer", obj.getName(), snapshotscn);
+		try (PreparedStatement stmt = readconn.prepareStatement(obj.getSnapshotSelect());
+				LoadGovernor.Lease lease = governor.acquire(readconn);) {
+			stmt.setFetchSize(INITIAL_LOAD_FETCHSIZE);
+			stmt.setLong(1, snapshotscn);
+			try (ResultSet rs = stmt.executeQuery();) {
+				RowConverter converter = new RowConverter(rs.getMetaData(), obj, getProducerProperties());
+				while (rs.next()) {
+					lease.row();
+					JexlRecord r = converter.convert(rs);
+					sendRow(obj, schemahandler, r, RowType.UPSERT);
+				}
+			}
+		}
+		try (PreparedStatement stmt = readconn.prepareStatement(obj.getReloadDeleteSelect());) {
+			stmt.setLong(1, upperbound.getSCN());
+			stmt.setLong(2, reloadscn);
+			stmt.setLong(3, snapshotscn);
+			try (ResultSet rs = stmt.executeQuery();) {
+				RowConverter converter = new RowConverter(rs.getMetaData(), obj, getProducerProperties());
+				while (rs.next()) {
+					JexlRecord r = converter.convert(rs);
+					sendRow(obj, schemahandler, r, RowType.DELETE);
+				}
 			}
 		}
+	}
 
+	/**
+	 * Rollback the database transaction, e.g. to remove the staged keys of a failed poll
+	 */
+	private void rollback() {
+		try {
+			conn.rollback();
+		} catch (SQLException e) {
+			logger.info("Oracle rollback failed - ignored", e);
+		}
+	}
+
+	/**
+	 * Delete all old data from PKLOG, done by the first producer of the database user calling it, see {@link SharedChangeReader#purge(Connection)}
+	 */
+	public void executePeriodicTask() throws ConnectorRuntimeException {
+		leaseConnection();
+		try {
+			getChangeReader().purge(conn);
+		} finally {
+			releaseConnection();
+		}
 	}
 
 	@Override
@@ -429,29 +1043,72 @@ public class OracleProducer extends Producer<OracleConnectionProperties, OracleP
 
 	@Override
 	public long executeInitialLoad(String schemaname, String transactionid) throws IOException {
+		return loadMapping(schemaname, transactionid);
+	}
+
+	private long loadMapping(String schemaname, String transactionid) throws IOException {
 		OracleTableMapping obj = schemadirectory.get(schemaname);
 		logger.debug("Initial load for mapping \"{}\" is about to start", schemaname);
-		String sql = obj.getInitialSelect();
-		SchemaHandler schemahandler = getSchema(obj.getName());
+		String sql = obj.getSnapshotSelect() != null ? obj.getSnapshotSelect() : obj.getInitialSelect();
+		SchemaHandler schemahandler = getSchemaHandler(obj);
 		Schema schema = null;
-		try (PreparedStatement stmt = conn.prepareStatement(sql); ) {
-			schema = obj.getAvroSchema();
-			beginInitialLoadTransaction(transactionid, schemaname, instance.getInstanceNumber());
-			try (ResultSet rs = stmt.executeQuery();) {
-				while (rs.next()) {
-					JexlRecord r = convert(rs, schema);
-					addRow(topic,
-							null,
-							schemahandler,
-							r,
-							RowType.INSERT,
-							null,
-							getProducerProperties().getName());
+		/*
+		 * A load runs for minutes to hours, hence it gets a session of its own instead of a pooled one, else the polls
+		 * of all producers sharing the pool would wait for it. The number of concurrent loads is bounded by the governor.
+		 */
+		Connection loadconn = OracleConnectorFactory.getDatabaseConnection(getConnectionProperties());
+		Connection readconn = null;
+		boolean uncommitted = false;
+		try {
+			/*
+			 * The delta starts at the upper bound, the oldest start SCN of all transactions open at that time. The table is
+			 * read as of the current SCN, which is at or above that bound, and the standby must have applied it. Changes of
+			 * transactions still open now are logged above the bound, hence the delta picks them up. Changes committed
+			 * between the bound and the snapshot SCN are loaded and sent by the delta again, which is harmless.
+			 */
+			long snapshotscn = getCurrentSCN(loadconn);
+			readconn = getReadConnection(snapshotscn, loadconn);
+			try (PreparedStatement stmt = readconn.prepareStatement(sql);
+					LoadGovernor.Lease lease = governor.acquire(readconn); ) {
+				schema = obj.getAvroSchema();
+				stmt.setFetchSize(INITIAL_LOAD_FETCHSIZE);
+				if (obj.getSnapshotSelect() != null) {
+					stmt.setLong(1, snapshotscn);
+					logger.debug("Initial load for mapping \"{}\" reads the table as of SCN {}", schemaname, snapshotscn);
 				}
+				beginInitialLoadTransaction(transactionid, schemaname, instance.getInstanceNumber());
+				uncommitted = true;
+				try (ResultSet rs = stmt.executeQuery();) {
+					RowConverter converter = new RowConverter(rs.getMetaData(), obj, getProducerProperties());
+					BusinessObjectAssembler assembler;
+					if (obj.hasChildtables()) {
+						assembler = new BusinessObjectAssembler(readconn, obj, getProducerProperties(),
+								(r, rowtype) -> sendRow(obj, schemahandler, r, rowtype));
+					} else {
+						assembler = null;
+					}
+					RowPipeline.execute(rs,
+							(row) -> {
+								lease.row();
+								return new RowPipeline.Row(converter.convert(row), RowType.INSERT, assembler != null ? row.getString(3) : null);
+							},
+							(r, rowtype, rowid) -> {
+								if (assembler != null) {
+									assembler.add(r, rowtype, rowid);
+								} else {
+									sendRow(obj, schemahandler, r, rowtype);
+								}
+							},
+							getProducerProperties().isPipelined());
+					if (assembler != null) {
+						assembler.flush();
+					}
+				}
+				commitInitialLoadTransaction();
+				uncommitted = false;
+				logger.debug("Initial load for mapping \"{}\" is completed, loaded {} rows", schemaname, getCurrentTransactionRowCount());
+				return getCurrentTransactionRowCount();
 			}
-			commitInitialLoadTransaction();
-			logger.debug("Initial load for mapping \"{}\" is completed, loaded {} rows", schemaname, getCurrentTransactionRowCount());
-			return getCurrentTransactionRowCount();
 		} catch (SQLException e) {
 			abortTransaction();
 			throw new ConnectorRuntimeException("Executing the initial load SQL failed with SQL error", e, 
@@ -460,6 +1117,16 @@ public class OracleProducer extends Producer<OracleConnectionProperties, OracleP
 			abortTransaction();
 			throw new ConnectorRuntimeException("SchemaBuilderException thrown when assigning the values", e, 
 					null, schema.toString());
+		} finally {
+			if (uncommitted) {
+				clearRowCaches();
+			}
+			releaseReadConnection(readconn, loadconn);
+			try {
+				loadconn.close();
+			} catch (SQLException e) {
+				logger.info("Closing the initial load session failed", e);
+			}
 		}
 	}
 }
@@ -5,18 +5,33 @@ import java.util.List;
 
 import io.rtdi.bigdata.connector.pipeline.foundation.exceptions.PropertiesException;
 import io.rtdi.bigdata.connector.properties.ProducerProperties;
+import io.rtdi.bigdata.oracleconnector.LobReader.LobPolicy;
 
 public class OracleProducerProperties extends ProducerProperties {
 
 	private static final String PRODUCER_TOPICNAME = "producer.topic";
 	private static final String PRODUCER_POLLINTERVAL = "producer.pollinterval";
 	private static final String PRODUCER_SOURCE_SCHEMAS = "producer.source";
+	private static final String PRODUCER_LOBMAXLENGTH = "producer.lobmaxlength";
+	private static final String PRODUCER_LOBPOLICY = "producer.lobpolicy";
+	private static final String PRODUCER_PKSTAGING = "producer.pkstaging";
+	private static final String PRODUCER_CATCHUPTHRESHOLD = "producer.catchupthreshold";
+	private static final String PRODUCER_PARTITIONS = "producer.partitions";
+	private static final String PRODUCER_REPLICATION = "producer.replication";
+	private static final String PRODUCER_PIPELINED = "producer.pipelined";
 
 	public OracleProducerProperties(String name) throws PropertiesException {
 		super(name);
 		properties.addStringProperty(PRODUCER_TOPICNAME, "Target Topic", null, null, name, true);
 		properties.addIntegerProperty(PRODUCER_POLLINTERVAL, "Poll interval", "Poll every n seconds", null, 60, true);
 		properties.addMultiSchemaSelectorProperty(PRODUCER_SOURCE_SCHEMAS, "Source tables", "List of source tables to create data for", null, true);
+		properties.addIntegerProperty(PRODUCER_LOBMAXLENGTH, "LOB max length", "Max characters/bytes read from a LOB column, 0 for unlimited; can be overwritten per column in the mapping", null, 0, false);
+		properties.addStringProperty(PRODUCER_LOBPOLICY, "LOB policy", "What to do with larger LOBs: TRUNCATE, SKIP or REFERENCE", null, LobPolicy.TRUNCATE.name(), false);
+		properties.addBooleanProperty(PRODUCER_PKSTAGING, "Stage changed keys", "Copy the changed primary keys once per poll into a temporary table shared by all mappings of the same table", null, false, false);
+		properties.addIntegerProperty(PRODUCER_CATCHUPTHRESHOLD, "Catch-up threshold (%)", "Re-read the entire table via flashback query if more than n percent of its rows got changed, 0 to disable; can be overwritten per mapping", null, 0, false);
+		properties.addIntegerProperty(PRODUCER_PARTITIONS, "Topic partitions", "Number of partitions when creating the topic, records are assigned by the hash of the primary key", null, 1, false);
+		properties.addIntegerProperty(PRODUCER_REPLICATION, "Topic replication", "Replication factor when creating the topic", null, 1, false);
+		properties.addBooleanProperty(PRODUCER_PIPELINED, "Pipelined fetch", "Fetch and convert the rows in a separate thread while the previous rows are sent", null, false, false);
 	}
 
 	public OracleProducerProperties(File dir, String name) throws PropertiesException {
@@ -35,6 +50,43 @@ public class OracleProducerProperties extends ProducerProperties {
 		return properties.getMultiSchemaSelectorValue(PRODUCER_SOURCE_SCHEMAS);
 	}
 	
+	public int getLobMaxLength() {
+		return properties.getIntPropertyValue(PRODUCER_LOBMAXLENGTH);
+	}
+
+	public LobPolicy getLobPolicy() {
+		String value = properties.getStringPropertyValue(PRODUCER_LOBPOLICY);
+		if (value == null || value.length() == 0) {
+			return LobPolicy.TRUNCATE;
+		} else {
+			return LobPolicy.valueOf(value.toUpperCase());
+		}
+	}
+
+	public boolean isPKStaging() {
+		Boolean value = properties.getBooleanPropertyValue(PRODUCER_PKSTAGING);
+		return value != null && value;
+	}
+
+	public int getCatchupThreshold() {
+		return properties.getIntPropertyValue(PRODUCER_CATCHUPTHRESHOLD);
+	}
+
+	public int getPartitions() {
+		int value = properties.getIntPropertyValue(PRODUCER_PARTITIONS);
+		return value < 1 ? 1 : value;
+	}
+
+	public int getReplication() {
+		int value = properties.getIntPropertyValue(PRODUCER_REPLICATION);
+		return value < 1 ? 1 : value;
+	}
+
+	public boolean isPipelined() {
+		Boolean value = properties.getBooleanPropertyValue(PRODUCER_PIPELINED);
+		return value != null && value;
+	}
+
 	public void setTopicName(String value) throws PropertiesException {
 		properties.setProperty(PRODUCER_TOPICNAME, value);
 	}
@@ -47,4 +99,32 @@ public class OracleProducerProperties extends ProducerProperties {
 		properties.setProperty(PRODUCER_SOURCE_SCHEMAS, value);
 	}
 
+	public void setLobMaxLength(int value) throws PropertiesException {
+		properties.setProperty(PRODUCER_LOBMAXLENGTH, value);
+	}
+
+	public void setLobPolicy(LobPolicy value) throws PropertiesException {
+		properties.setProperty(PRODUCER_LOBPOLICY, value.name());
+	}
+
+	public void setPKStaging(boolean value) throws PropertiesException {
+		properties.setProperty(PRODUCER_PKSTAGING, value);
+	}
+
+	public void setCatchupThreshold(int value) throws PropertiesException {
+		properties.setProperty(PRODUCER_CATCHUPTHRESHOLD, value);
+	}
+
+	public void setPartitions(int value) throws PropertiesException {
+		properties.setProperty(PRODUCER_PARTITIONS, value);
+	}
+
+	public void setReplication(int value) throws PropertiesException {
+		properties.setProperty(PRODUCER_REPLICATION, value);
+	}
+
+	public void setPipelined(boolean value) throws PropertiesException {
+		properties.setProperty(PRODUCER_PIPELINED, value);
+	}
+
 }
@@ -0,0 +1,179 @@
+package io.rtdi.bigdata.oracleconnector;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import io.rtdi.bigdata.connector.connectorframework.exceptions.ConnectorRuntimeException;
+import io.rtdi.bigdata.oracleconnector.OracleBrowse.TableImport;
+import io.rtdi.bigdata.oracleconnector.OracleBrowse.TableImportPage;
+
+/**
+ * Cached list of all tables the connected user can capture.
+ * The full dictionary scan is executed once, afterwards the list is valid for the configured time-to-live.
+ * When it expired, only the tables with a last_ddl_time newer than the previous scan are read again and
+ * a simple count tells if tables got dropped in between, which is the only case needing a full rescan.
+ */
+public class OracleTableCatalog {
+	/*
+	 * Get all tables that are not Oracle maintained, hence ignoring SYS, SYSTEM,...
+	 * If the user has CREATE-ANY-TRIGGER then all schemas are shown.
+	 * If the user has just CREATE-TRIGGER privs, only the own tables are shown.
+	 */
+	private static final String TABLEFILTER = "t.owner not in (select username from all_users where oracle_maintained = 'Y') and \r\n"
+			+ "    ( exists (select privilege from USER_SYS_PRIVS where privilege = 'CREATE ANY TRIGGER') \r\n"
+			+ "      or (exists (select privilege from USER_SYS_PRIVS where privilege = 'CREATE TRIGGER') \r\n"
+			+ "          and t.owner = user))";
+	private static final String SELECT_TABLES = "select t.owner, t.table_name, o.last_ddl_time from all_tables t \r\n"
+			+ "  join all_objects o on (o.owner = t.owner and o.object_name = t.table_name and o.object_type = 'TABLE') \r\n"
+			+ "  where " + TABLEFILTER;
+	private static final String SELECT_CHANGED_TABLES = SELECT_TABLES + " and o.last_ddl_time > ?";
+	private static final String COUNT_TABLES = "select count(*) from all_tables t where " + TABLEFILTER;
+
+	private final long ttl;
+	private Map<String, TableImport> tables = null;
+	private Timestamp lastddltime = null;
+	private long validuntil = 0L;
+
+	/**
+	 * @param ttlseconds time in seconds the cached dictionary information is used without checking the database
+	 */
+	public OracleTableCatalog(int ttlseconds) {
+		this.ttl = ttlseconds * 1000L;
+	}
+
+	/**
+	 * @param conn the connection to read the dictionary with
+	 * @return all tables, either from the cache or freshly read
+	 * @throws ConnectorRuntimeException if the dictionary cannot be read
+	 */
+	public synchronized List<TableImport> getTables(Connection conn) throws ConnectorRuntimeException {
+		long now = System.currentTimeMillis();
+		if (tables == null) {
+			fullRefresh(conn);
+		} else if (now > validuntil) {
+			incrementalRefresh(conn);
+		}
+		return new ArrayList<>(tables.values());
+	}
+
+	/**
+	 * Return one page of the table list, filtered and sorted.
+	 *
+	 * @param conn the connection to read the dictionary with
+	 * @param owner optional filter, owner starts with the text, case insensitive
+	 * @param name optional filter, table name contains the text, case insensitive
+	 * @param sort either "oracleowner" (default) or "oracletablename"
+	 * @param descending sort order
+	 * @param offset first row to return
+	 * @param limit max number of rows to return, 0 or negative for all
+	 * @return the page including the total number of rows matching the filter
+	 * @throws ConnectorRuntimeException if the dictionary cannot be read
+	 */
+	public TableImportPage getPage(Connection conn, String owner, String name, String sort, boolean descending, int offset, int limit) throws ConnectorRuntimeException {
+		List<TableImport> all = getTables(conn);
+		String ownerfilter = (owner == null || owner.length() == 0) ? null : owner.toUpperCase(Locale.ROOT);
+		String namefilter = (name == null || name.length() == 0) ? null : name.toUpperCase(Locale.ROOT);
+		List<TableImport> filtered = new ArrayList<>();
+		for (TableImport t : all) {
+			if (ownerfilter != null && !t.getOracleowner().toUpperCase(Locale.ROOT).startsWith(ownerfilter)) {
+				continue;
+			}
+			if (namefilter != null && !t.getOracletablename().toUpperCase(Locale.ROOT).contains(namefilter)) {
+				continue;
+			}
+			filtered.add(t);
+		}
+		Comparator<TableImport> comparator;
+		if ("oracletablename".equals(sort)) {
+			comparator = Comparator.comparing(TableImport::getOracletablename).thenComparing(TableImport::getOracleowner);
+		} else {
+			comparator = Comparator.comparing(TableImport::getOracleowner).thenComparing(TableImport::getOracletablename);
+		}
+		if (descending) {
+			comparator = comparator.reversed();
+		}
+		filtered.sort(comparator);
+		int start = Math.max(0, Math.min(offset, filtered.size()));
+		int end = limit <= 0 ? filtered.size() : Math.min(filtered.size(), start + limit);
+		return new TableImportPage(filtered.size(), start, limit, new ArrayList<>(filtered.subList(start, end)));
+	}
+
+	/**
+	 * Drop the cache so the next call reads the entire dictionary again.
+	 */
+	public synchronized void invalidate() {
+		tables = null;
+		lastddltime = null;
+		validuntil = 0L;
+	}
+
+	private void fullRefresh(Connection conn) throws ConnectorRuntimeException {
+		Map<String, TableImport> m = new HashMap<>();
+		lastddltime = null;
+		read(conn, SELECT_TABLES, null, m);
+		tables = m;
+		validuntil = System.currentTimeMillis() + ttl;
+	}
+
+	private void incrementalRefresh(Connection conn) throws ConnectorRuntimeException {
+		if (lastddltime == null) {
+			fullRefresh(conn);
+			return;
+		}
+		read(conn, SELECT_CHANGED_TABLES, lastddltime, tables);
+		/*
+		 * Dropped tables do not show up in the delta, hence compare the counts.
+		 */
+		if (countTables(conn) != tables.size()) {
+			fullRefresh(conn);
+		} else {
+			validuntil = System.currentTimeMillis() + ttl;
+		}
+	}
+
+	private void read(Connection conn, String sql, Timestamp since, Map<String, TableImport> target) throws ConnectorRuntimeException {
+		try (PreparedStatement stmt = conn.prepareStatement(sql);) {
+			if (since != null) {
+				stmt.setTimestamp(1, since);
+			}
+			try (ResultSet rs = stmt.executeQuery();) {
+				while (rs.next()) {
+					String schemaname = rs.getString(1);
+					String tablename = rs.getString(2);
+					Timestamp ddltime = rs.getTimestamp(3);
+					target.put(schemaname + "." + tablename, new TableImport(schemaname, tablename));
+					if (ddltime != null && (lastddltime == null || ddltime.after(lastddltime))) {
+						lastddltime = ddltime;
+					}
+				}
+			}
+		} catch (SQLException e) {
+			throw new ConnectorRuntimeException("Reading all tables of the ALL_TABLES view failed", e,
+					"Execute the sql as the connection's Oracle user", sql);
+		}
+	}
+
+	private int countTables(Connection conn) throws ConnectorRuntimeException {
+		try (PreparedStatement stmt = conn.prepareStatement(COUNT_TABLES);) {
+			try (ResultSet rs = stmt.executeQuery();) {
+				if (rs.next()) {
+					return rs.getInt(1);
+				} else {
+					return 0;
+				}
+			}
+		} catch (SQLException e) {
+			throw new ConnectorRuntimeException("Counting the tables of the ALL_TABLES view failed", e,
+					"Execute the sql as the connection's Oracle user", COUNT_TABLES);
+		}
+	}
+}
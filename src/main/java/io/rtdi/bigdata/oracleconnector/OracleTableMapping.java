@@ -8,25 +8,36 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.apache.avro.Schema;
+import org.apache.avro.Schema.Field;
 import org.apache.avro.SchemaBuilderException;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import io.rtdi.bigdata.connector.connectorframework.exceptions.ConnectorRuntimeException;
 import io.rtdi.bigdata.connector.pipeline.foundation.exceptions.PropertiesException;
 import io.rtdi.bigdata.kafka.avro.SchemaConstants;
 import io.rtdi.bigdata.kafka.avro.datatypes.*;
+import io.rtdi.bigdata.connector.pipeline.foundation.utils.AvroNameEncoder;
 import io.rtdi.bigdata.connector.pipeline.foundation.utils.FileNameEncoder;
 import io.rtdi.bigdata.kafka.avro.recordbuilders.AvroField;
+import io.rtdi.bigdata.kafka.avro.recordbuilders.AvroRecordArray;
 import io.rtdi.bigdata.kafka.avro.recordbuilders.SchemaBuilder;
 import io.rtdi.bigdata.kafka.avro.recordbuilders.ValueSchema;
+import io.rtdi.bigdata.oracleconnector.LobReader.LobPolicy;
 
 public class OracleTableMapping {
 	private String oracletablename; // e.g. salesorder as L1
@@ -40,8 +51,34 @@ public class OracleTableMapping {
 	private String username;
 	private String mappingname;
 	private String deltaselect;
+	private String stageddeltaselect;
+	private String staginginsert;
 	private String initialselect;
+	private String snapshotselect;
+	private String catchupdeleteselect;
+	private String reloaddeleteselect;
+	private Integer catchupthreshold;
+	private Integer pollinterval;
 	private Triggers triggerdefinitions;
+	private Map<String, ColumnMapping> columnmappingindex;
+	private boolean integralnumbers = false;
+	private List<OracleTableMapping> childtables;
+	private List<JoinColumn> joincolumns;
+	private OracleTableMapping parent;
+	private String unconstrainednumber;
+	private List<String> excludedcolumns;
+	private String rowfilter;
+	private boolean triggerfilter = false;
+	private boolean deduplicate = false;
+	/**
+	 * The type unconstrained NUMBER columns always got, as data_length is 22 and data_scale null for them
+	 */
+	private static final String DEFAULT_UNCONSTRAINED_NUMBER = "NUMBER(22, 0)";
+	private static final Pattern LEGACY_NUMBER = Pattern.compile("NUMBER\\(22, (\\d+)\\)");
+	/**
+	 * The decimal precision all NUMBER columns got before the precision was imported
+	 */
+	private static final int LEGACY_NUMBER_PRECISION = 22;
 
 	public OracleTableMapping() {
 		super();
@@ -65,6 +102,31 @@ public class OracleTableMapping {
 	}
 
 	public void read(File directory) throws PropertiesException {
+		read(readFile(mappingname, directory));
+	}
+
+	/**
+	 * @param definition the parsed mapping file, see {@link #readFile(String, File)}, it is not modified
+	 * @throws PropertiesException if the definition is not a valid mapping
+	 */
+	public void read(JsonNode definition) throws PropertiesException {
+		try {
+			OracleTableMapping data = mapper.treeToValue(definition, this.getClass());
+		    parseValues(data);
+		} catch (PropertiesException e) {
+			throw e; // to avoid nesting the exception
+		} catch (IOException e) {
+			throw new PropertiesException("Cannot parse the json file with the properties", e, "check filename and format", mappingname);
+		}
+	}
+
+	/**
+	 * @param mappingname the name of the mapping
+	 * @param directory the directory with the mapping files
+	 * @return the parsed json of the mapping file
+	 * @throws PropertiesException if the file cannot be read
+	 */
+	public static JsonNode readFile(String mappingname, File directory) throws PropertiesException {
 		if (!directory.exists()) {
 			throw new PropertiesException("Directory for the Relational Object Definition files does not exist", "Use the UI or create the file manually", directory.getAbsolutePath());
 		} else if (!directory.isDirectory()) {
@@ -75,10 +137,7 @@ public class OracleTableMapping {
 				throw new PropertiesException("Properties file is not read-able", "Check file permissions and users", file.getAbsolutePath());
 			} else {
 				try {
-					OracleTableMapping data = mapper.readValue(file, this.getClass());
-				    parseValues(data);
-				} catch (PropertiesException e) {
-					throw e; // to avoid nesting the exception
+					return mapper.readTree(file);
 				} catch (IOException e) {
 					throw new PropertiesException("Cannot parse the json file with the properties", e, "check filename and format", file.getName());
 				}
@@ -134,6 +193,73 @@ public class OracleTableMapping {
 		return triggerdefinitions;
 	}
 
+	/**
+	 * Build the trigger definitions based on an already loaded list of existing triggers, see {@link #getExistingTriggers(Connection, String)}.
+	 * 
+	 * @param existingtriggers map of owner.tablename to the found trigger suffixes
+	 * @return the trigger definitions for this table
+	 * @throws ConnectorRuntimeException if the mapping is not valid
+	 */
+	public Triggers getTriggerDefinitions(Map<String, Set<String>> existingtriggers) throws ConnectorRuntimeException {
+		return getTriggerDefinitions(existingtriggers, null);
+	}
+
+	/**
+	 * Build the trigger definitions based on an already loaded list of existing triggers, see {@link #getExistingTriggers(Connection, String)}.
+	 * 
+	 * @param existingtriggers map of owner.tablename to the found trigger suffixes
+	 * @param conditions the WHEN conditions of all mappings of the table, null to use this mapping's only
+	 * @return the trigger definitions for this table
+	 * @throws ConnectorRuntimeException if the mapping is not valid
+	 */
+	public Triggers getTriggerDefinitions(Map<String, Set<String>> existingtriggers, TriggerConditions conditions) throws ConnectorRuntimeException {
+		Triggers t = new Triggers(conditions);
+		Set<String> found = existingtriggers.get(oracleowner + "." + getOracletablename());
+		if (found != null) {
+			for (String suffix : found) {
+				t.setFoundTrigger(suffix);
+			}
+		}
+		return t;
+	}
+
+	/**
+	 * Read all change logging triggers of the database with a single query.
+	 * 
+	 * @param conn the database connection
+	 * @param owner optional table owner to limit the result
+	 * @return map of owner.tablename to the suffixes (i, u, d) of the found triggers
+	 * @throws ConnectorRuntimeException if the dictionary cannot be read
+	 */
+	public static Map<String, Set<String>> getExistingTriggers(Connection conn, String owner) throws ConnectorRuntimeException {
+		String sql = "select table_owner, table_name, substr(trigger_name, -1) from all_triggers " + 
+				"where trigger_name like table_name || '\\_t\\__' escape '\\' ";
+		if (owner != null) {
+			sql += "and table_owner = ?";
+		}
+		Map<String, Set<String>> ret = new HashMap<>();
+		try (PreparedStatement stmt = conn.prepareStatement(sql);) {
+			if (owner != null) {
+				stmt.setString(1, owner);
+			}
+			try (ResultSet rs = stmt.executeQuery();) {
+				while (rs.next()) {
+					String key = rs.getString(1) + "." + rs.getString(2);
+					Set<String> found = ret.get(key);
+					if (found == null) {
+						found = new HashSet<>();
+						ret.put(key, found);
+					}
+					found.add(rs.getString(3));
+				}
+			}
+		} catch (SQLException e) {
+			throw new ConnectorRuntimeException("Reading the existing Change Logging triggers failed in the database", e, 
+					"Execute the sql as the connection's Oracle user", sql);
+		}
+		return ret;
+	}
+
 	void createTrigger() throws ConnectorRuntimeException {
 		Triggers t = getTriggerDefinitions();
 		t.createTriggers();
@@ -142,8 +268,273 @@ public class OracleTableMapping {
 	protected void parseValues(OracleTableMapping data) throws ConnectorRuntimeException {
 		this.oracletablename = data.getOracletablename();
 		this.columnmappings = data.getColumnmappings();
+		this.columnmappingindex = null;
 		this.pkcolumns = data.getPKColumns();
 		this.oracleowner = data.getOracleowner();
+		this.integralnumbers = data.isIntegralnumbers();
+		this.unconstrainednumber = data.getUnconstrainednumber();
+		this.childtables = data.getChildtables();
+		this.joincolumns = data.getJoincolumns();
+		this.catchupthreshold = data.getCatchupthreshold();
+		this.pollinterval = data.getPollinterval();
+		this.excludedcolumns = data.getExcludedcolumns();
+		this.rowfilter = data.getRowfilter();
+		this.triggerfilter = data.isTriggerfilter();
+		this.deduplicate = data.isDeduplicate();
+		initChildren();
+		for (OracleTableMapping table : getAllTableMappings()) {
+			table.removeExcludedColumns();
+		}
+	}
+
+	/**
+	 * Excluded columns are neither read, converted nor part of the schema.
+	 * 
+	 * @throws ConnectorRuntimeException if a primary key or join column is excluded
+	 */
+	private void removeExcludedColumns() throws ConnectorRuntimeException {
+		if (excludedcolumns != null && excludedcolumns.size() != 0 && columnmappings != null) {
+			List<ColumnMapping> l = new ArrayList<>();
+			for (ColumnMapping m : columnmappings) {
+				if (!excludedcolumns.contains(m.getTableColumnName())) {
+					l.add(m);
+				} else if (pkcolumns != null && pkcolumns.contains(m.getTableColumnName())) {
+					throw new ConnectorRuntimeException("A primary key column cannot be excluded", null, 
+							"Remove the column from the list of excluded columns", getName() + ": " + m.getTableColumnName());
+				} else if (isJoinColumn(m.getTableColumnName())) {
+					throw new ConnectorRuntimeException("A column joining a parent and a child table cannot be excluded", null, 
+							"Remove the column from the list of excluded columns", getName() + ": " + m.getTableColumnName());
+				}
+			}
+			columnmappings = l;
+			columnmappingindex = null;
+		}
+	}
+
+	/**
+	 * @return true if the column is used to join this table with its parent or one of its child tables
+	 */
+	private boolean isJoinColumn(String columnname) {
+		if (joincolumns != null) {
+			for (JoinColumn j : joincolumns) {
+				if (columnname.equals(j.getChildcolumn())) {
+					return true;
+				}
+			}
+		}
+		if (childtables != null) {
+			for (OracleTableMapping child : childtables) {
+				if (child.joincolumns != null) {
+					for (JoinColumn j : child.joincolumns) {
+						if (columnname.equals(j.getParentcolumn())) {
+							return true;
+						}
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Child tables are read from the json file as plain objects, they need the connection information
+	 * of the root and the link to their parent.
+	 */
+	private void initChildren() {
+		if (childtables != null) {
+			for (OracleTableMapping child : childtables) {
+				child.username = username;
+				child.conn = conn;
+				child.parent = this;
+				child.initChildren();
+			}
+		}
+	}
+
+	/**
+	 * Add a detail table to this mapping, the data of the child table is added as nested array of records.
+	 * 
+	 * @param name the name of the array field in the parent record
+	 * @param dbschema owner of the child table
+	 * @param dbtablename the child table
+	 * @param joincolumns how the child table is joined to this table
+	 * @return the new child mapping with all columns and the primary key of the child table
+	 * @throws ConnectorRuntimeException if the child table cannot be read
+	 */
+	public OracleTableMapping addChildTable(String name, String dbschema, String dbtablename, List<JoinColumn> joincolumns) throws ConnectorRuntimeException {
+		OracleTableMapping child = new OracleTableMapping(name, username, dbschema, dbtablename, conn);
+		child.setJoincolumns(joincolumns);
+		child.parent = this;
+		if (childtables == null) {
+			childtables = new ArrayList<>();
+		}
+		childtables.add(child);
+		return child;
+	}
+
+	/**
+	 * @return the child tables whose rows are nested into this table's records
+	 */
+	public List<OracleTableMapping> getChildtables() {
+		return childtables;
+	}
+
+	public void setChildtables(List<OracleTableMapping> childtables) {
+		this.childtables = childtables;
+	}
+
+	/**
+	 * @return for child tables the join condition to the parent table
+	 */
+	public List<JoinColumn> getJoincolumns() {
+		return joincolumns;
+	}
+
+	public void setJoincolumns(List<JoinColumn> joincolumns) {
+		this.joincolumns = joincolumns;
+	}
+
+	@JsonIgnore
+	public boolean hasChildtables() {
+		return childtables != null && childtables.size() != 0;
+	}
+
+	@JsonIgnore
+	public OracleTableMapping getParent() {
+		return parent;
+	}
+
+	/**
+	 * @return this mapping and all its child tables, recursively, parents before their children
+	 */
+	@JsonIgnore
+	public List<OracleTableMapping> getAllTableMappings() {
+		List<OracleTableMapping> ret = new ArrayList<>();
+		addAllTableMappings(ret);
+		return ret;
+	}
+
+	private void addAllTableMappings(List<OracleTableMapping> list) {
+		list.add(this);
+		if (childtables != null) {
+			for (OracleTableMapping child : childtables) {
+				child.addAllTableMappings(list);
+			}
+		}
+	}
+
+	/**
+	 * @return true if NUMBER(p, 0) columns should use the Avro int/long datatypes instead of decimal. If this is set or
+	 * {@link #getUnconstrainednumber()}, the other NUMBER(p, s) columns get a decimal(p, s), else the decimal(22, s)
+	 * NUMBER columns always got.
+	 */
+	public boolean isIntegralnumbers() {
+		return integralnumbers;
+	}
+
+	public void setIntegralnumbers(boolean integralnumbers) {
+		this.integralnumbers = integralnumbers;
+	}
+
+	/**
+	 * @return the Oracle datatype NUMBER columns without precision are treated as, e.g. BINARY_DOUBLE or NUMBER(38, 10),
+	 * null for NUMBER(22, 0)
+	 */
+	public String getUnconstrainednumber() {
+		return unconstrainednumber;
+	}
+
+	public void setUnconstrainednumber(String unconstrainednumber) {
+		this.unconstrainednumber = unconstrainednumber;
+	}
+
+	/**
+	 * @return the table columns not to be captured
+	 */
+	public List<String> getExcludedcolumns() {
+		return excludedcolumns;
+	}
+
+	/**
+	 * @param excludedcolumns the table columns not to be captured, primary key columns cannot be excluded
+	 */
+	public void setExcludedcolumns(List<String> excludedcolumns) {
+		this.excludedcolumns = excludedcolumns;
+	}
+
+	/**
+	 * @return a SQL condition on the table's columns, using the alias d, e.g. <code>d."BUKRS" = '1000'</code>.
+	 * Only rows matching the condition are part of the initial load and the delta.
+	 * With {@link #isTriggerfilter()} a row no longer matching the condition after an update is sent as delete.
+	 */
+	public String getRowfilter() {
+		return rowfilter;
+	}
+
+	public void setRowfilter(String rowfilter) {
+		this.rowfilter = rowfilter;
+	}
+
+	/**
+	 * @return true if the row filter is added to the change logging triggers as WHEN clause, so changes of rows
+	 * not matching the filter are not even logged in the PKLOG table. The triggers are shared by all mappings of the table,
+	 * see {@link TriggerConditions}, hence rows matching another mapping's filter are logged as well and their updates
+	 * are sent as deletes by this mapping.
+	 */
+	public boolean isTriggerfilter() {
+		return triggerfilter;
+	}
+
+	public void setTriggerfilter(boolean triggerfilter) {
+		this.triggerfilter = triggerfilter;
+	}
+
+	@JsonIgnore
+	private boolean hasRowfilter() {
+		return parent == null && rowfilter != null && rowfilter.trim().length() != 0;
+	}
+
+	/**
+	 * @param alias the correlation name to use instead of d
+	 * @return the row filter for the trigger's WHEN clause, e.g. using the alias c for the new values
+	 */
+	private String getRowfilter(String alias) {
+		return rowfilter.replaceAll("(?<![\\w$#\".])d\\.", alias + ".");
+	}
+
+	/**
+	 * @return true if updates not changing any of the mapped values are suppressed, see {@link RowHashCache}
+	 */
+	public boolean isDeduplicate() {
+		return deduplicate;
+	}
+
+	public void setDeduplicate(boolean deduplicate) {
+		this.deduplicate = deduplicate;
+	}
+
+	/**
+	 * @return the percentage of changed rows above which the table is re-read via flashback query instead of reading the delta,
+	 * null to use the producer's default and 0 to disable
+	 */
+	public Integer getCatchupthreshold() {
+		return catchupthreshold;
+	}
+
+	public void setCatchupthreshold(Integer catchupthreshold) {
+		this.catchupthreshold = catchupthreshold;
+	}
+
+	/**
+	 * @return the seconds between two extractions of this mapping, null to extract it with every poll of the producer.
+	 * Mappings with the same interval form a poll class.
+	 */
+	public Integer getPollinterval() {
+		return pollinterval;
+	}
+
+	public void setPollinterval(Integer pollinterval) {
+		this.pollinterval = pollinterval;
 	}
 
 	public void setOracletablename(String tablename) {
@@ -155,7 +546,7 @@ public class OracleTableMapping {
 	}
 
 	public void addColumns() throws ConnectorRuntimeException {
-		String sql = "select c.column_name, c.data_type, c.data_length, c.data_scale, pc.position \r\n"
+		String sql = "select c.column_name, c.data_type, c.data_length, c.data_scale, pc.position, c.data_precision \r\n"
 				+ "from all_tab_columns c \r\n"
 				+ "	left outer join all_constraints p \r\n"
 				+ "		on (p.constraint_type = 'P' and p.owner = c.owner and p.table_name = c.table_name) \r\n"
@@ -169,9 +560,21 @@ public class OracleTableMapping {
 			ResultSet rs = stmt.executeQuery();
 			int columncount = 0;
 			while (rs.next()) {
-				ColumnMapping m = addMapping(rs.getString(1), "\"" + rs.getString(1) + "\"", getOracleDataType(rs.getString(2), rs.getInt(3), rs.getInt(4)));
-				if (rs.getInt(5) != 0) {
-					addPK(rs.getInt(5), m);
+				String columnname = rs.getString(1);
+				String datatype = rs.getString(2);
+				int length = rs.getInt(3);
+				Integer scale = rs.getInt(4);
+				if (rs.wasNull()) {
+					scale = null;
+				}
+				int pkposition = rs.getInt(5);
+				Integer precision = rs.getInt(6);
+				if (rs.wasNull()) {
+					precision = null;
+				}
+				ColumnMapping m = addMapping(columnname, "\"" + columnname + "\"", getOracleDataType(datatype, length, precision, scale));
+				if (pkposition != 0) {
+					addPK(pkposition, m);
 				}
 				columncount++;
 			}
@@ -185,6 +588,89 @@ public class OracleTableMapping {
 		}
 	}
 
+	/**
+	 * Re-read the table definition after a DDL change. Columns still existing keep their mapping, e.g. the alias, the
+	 * SQL expression and the LOB settings, but get the current data type. New columns are added, dropped columns removed
+	 * and the primary key is the current one. The schema of the entire mapping tree is rebuilt on next use.
+	 * 
+	 * @return true if the columns, data types or the primary key changed
+	 * @throws ConnectorRuntimeException if the table cannot be read, the mapping is unchanged in that case
+	 */
+	public boolean refreshColumns() throws ConnectorRuntimeException {
+		List<ColumnMapping> oldmappings = columnmappings;
+		List<String> oldpk = pkcolumns;
+		List<String> before = getColumnSignature();
+		Map<String, ColumnMapping> existing = new HashMap<>();
+		if (oldmappings != null) {
+			for (ColumnMapping m : oldmappings) {
+				existing.put(m.getTableColumnName(), m);
+			}
+		}
+		columnmappings = null;
+		pkcolumns = null;
+		columnmappingindex = null;
+		try {
+			addColumns();
+			for (int i = 0; i < columnmappings.size(); i++) {
+				ColumnMapping current = columnmappings.get(i);
+				ColumnMapping previous = existing.get(current.getTableColumnName());
+				if (previous != null) {
+					if (!isLegacyNumber(previous.getOracledatatype(), current.getOracledatatype())) {
+						previous.setOracledatatype(current.getOracledatatype());
+					}
+					columnmappings.set(i, previous);
+					int pkpos = pkcolumns == null ? -1 : pkcolumns.indexOf(current.getAlias());
+					if (pkpos != -1) {
+						pkcolumns.set(pkpos, previous.getAlias());
+					}
+				}
+			}
+			removeExcludedColumns();
+		} catch (ConnectorRuntimeException e) {
+			columnmappings = oldmappings;
+			pkcolumns = oldpk;
+			columnmappingindex = null;
+			throw e;
+		}
+		if (before.equals(getColumnSignature()) && Objects.equals(oldpk, pkcolumns)) {
+			return false;
+		}
+		for (OracleTableMapping m = this; m != null; m = m.parent) {
+			m.avroschema = null;
+		}
+		return true;
+	}
+
+	/**
+	 * Mappings imported before the real precision was read contain NUMBER(22, s) for all NUMBER columns. Replacing
+	 * that with the now imported NUMBER(p, s) would change the schema without the column being changed.
+	 * 
+	 * @return true if the previous datatype is such a NUMBER(22, s) of the same scale as the current datatype
+	 */
+	private static boolean isLegacyNumber(String previous, String current) {
+		if (previous == null || current == null) {
+			return false;
+		}
+		Matcher m = LEGACY_NUMBER.matcher(previous);
+		if (!m.matches()) {
+			return false;
+		} else if (current.equals("NUMBER")) {
+			return m.group(1).equals("0");
+		} else {
+			return current.startsWith("NUMBER(") && current.endsWith(", " + m.group(1) + ")");
+		}
+	}
+
+	private List<String> getColumnSignature() {
+		List<String> l = new ArrayList<>();
+		if (columnmappings != null) {
+			for (ColumnMapping m : columnmappings) {
+				l.add(m.getAlias() + " " + m.getOracledatatype());
+			}
+		}
+		return l;
+	}
+
 	public void addPK(int pos, ColumnMapping m) {
 		if (pkcolumns == null) {
 			pkcolumns = new ArrayList<>();
@@ -199,10 +685,19 @@ public class OracleTableMapping {
 		}
 	}
 
-	private static String getOracleDataType(String datatype, int length, int scale) {
+	private static String getOracleDataType(String datatype, int length, Integer precision, Integer scale) {
 		switch (datatype) {
-		case "NUMBER": // number(p, s) with p between 1..38 and scale 0..p
-			return datatype + "(" + length + ", " + scale + ")";
+		case "NUMBER": // number(p, s) with p between 1..38 and scale -84..127, data_length is always 22 bytes
+			if (precision == null && scale == null) {
+				return datatype; // unconstrained number
+			}
+			int p = precision == null ? 38 : precision; // number(*, s)
+			int s = scale == null ? 0 : scale;
+			if (s < 0) {
+				return datatype + "(" + (p - s) + ", 0)"; // number(10, -2) rounds to hundreds and has up to 12 digits
+			} else {
+				return datatype + "(" + p + ", " + s + ")";
+			}
 		case "CHAR":
 		case "VARCHAR":
 		case "VARCHAR2":
@@ -221,6 +716,7 @@ public class OracleTableMapping {
 		}
 		ColumnMapping m = new ColumnMapping(columnname, sqlexpression, oracledatatype);
 		columnmappings.add(m);
+		columnmappingindex = null;
 		return m;
 	}
 
@@ -229,11 +725,88 @@ public class OracleTableMapping {
 		o.read(directory);
 		return o;
 	}
+
+	/**
+	 * @param username the user owning the PKLOG
+	 * @param name the mapping name
+	 * @param conn the session the mapping uses
+	 * @param definition the parsed mapping file, see {@link #readFile(String, File)}
+	 * @return a new mapping, independent of all others created from the same definition
+	 * @throws PropertiesException if the definition is not a valid mapping
+	 */
+	public static OracleTableMapping readDefinition(String username, String name, Connection conn, JsonNode definition) throws PropertiesException {
+		OracleTableMapping o = new OracleTableMapping(username, name, conn);
+		o.read(definition);
+		return o;
+	}
+
+	/**
+	 * A copy sharing nothing mutable with this mapping, except the Avro schema which is not modified once built.
+	 * 
+	 * @param username the user owning the PKLOG
+	 * @param conn the session the copy uses
+	 * @return a new mapping with the same definition
+	 */
+	public OracleTableMapping copy(String username, Connection conn) {
+		OracleTableMapping o = new OracleTableMapping();
+		o.username = username;
+		o.conn = conn;
+		o.copyValues(this);
+		o.initChildren();
+		return o;
+	}
+
+	private void copyValues(OracleTableMapping data) {
+		this.mappingname = data.mappingname;
+		this.oracletablename = data.oracletablename;
+		this.oracleowner = data.oracleowner;
+		if (data.columnmappings != null) {
+			this.columnmappings = new ArrayList<>();
+			for (ColumnMapping m : data.columnmappings) {
+				this.columnmappings.add(new ColumnMapping(m));
+			}
+		}
+		this.pkcolumns = data.pkcolumns == null ? null : new ArrayList<>(data.pkcolumns);
+		this.integralnumbers = data.integralnumbers;
+		this.unconstrainednumber = data.unconstrainednumber;
+		if (data.childtables != null) {
+			this.childtables = new ArrayList<>();
+			for (OracleTableMapping child : data.childtables) {
+				OracleTableMapping c = new OracleTableMapping();
+				c.copyValues(child);
+				this.childtables.add(c);
+			}
+		}
+		if (data.joincolumns != null) {
+			this.joincolumns = new ArrayList<>();
+			for (JoinColumn j : data.joincolumns) {
+				this.joincolumns.add(new JoinColumn(j.getParentcolumn(), j.getChildcolumn()));
+			}
+		}
+		this.catchupthreshold = data.catchupthreshold;
+		this.pollinterval = data.pollinterval;
+		this.excludedcolumns = data.excludedcolumns == null ? null : new ArrayList<>(data.excludedcolumns);
+		this.rowfilter = data.rowfilter;
+		this.triggerfilter = data.triggerfilter;
+		this.deduplicate = data.deduplicate;
+		this.avroschema = data.avroschema;
+	}
 	
 	@JsonIgnore
 	public void setConnection(OracleBrowse browser) {
 		this.username = browser.getConnectionProperties().getUsername();
 		this.conn = browser.getConnection();
+		initChildren();
+	}
+
+	/**
+	 * Producers lease their session from the pool per call, hence the mapping has to use the session of the current call
+	 * 
+	 * @param conn the session
+	 */
+	void setConnection(Connection conn) {
+		this.conn = conn;
+		initChildren();
 	}
 
 	@JsonIgnore
@@ -250,6 +823,18 @@ public class OracleTableMapping {
 		return username;
 	}
 
+	/**
+	 * The PKLOG is qualified with the user owning it, so the selects work in sessions of other users as well,
+	 * e.g. reading from a standby with a different user.
+	 */
+	private String getPKLogTable() {
+		return "\"" + username + "\".PKLOG";
+	}
+
+	private String getPKStageTable() {
+		return "\"" + username + "\".PKSTAGE";
+	}
+
 	
 	@JsonIgnore
 	public Schema getAvroSchema() throws SchemaBuilderException, ConnectorRuntimeException {
@@ -263,21 +848,118 @@ public class OracleTableMapping {
 	
 	public void createDeltaObjects() throws ConnectorRuntimeException, SQLException {
 		createTrigger();
-		deltaselect = createSelectDelta().toString();
-		initialselect = createSelectInitial().toString();
+		createSelects();
 	}
 
-	private StringBuffer createSelectDelta() {
+	/**
+	 * Generate the delta and initial load select statements without touching the triggers,
+	 * used when the triggers are deployed via the {@link TriggerDeploymentPlanner}.
+	 */
+	void createSelects() {
+		deltaselect = "select " + createSelectDeltaBody(createDeltaKeys(), "", false);
+		if (!hasChildtables()) {
+			staginginsert = createStagingInsert().toString();
+			stageddeltaselect = createSelectDeltaBody(createStagedKeys(), "", false).toString();
+			snapshotselect = createSelectInitial(" as of scn ?").toString();
+			catchupdeleteselect = "select " + createSelectDeltaBody(createDeletedKeys(), " as of scn ?", true);
+			reloaddeleteselect = "select " + createSelectDeltaBody(createSnapshotKeys(), " as of scn ?", true);
+		} else {
+			staginginsert = null;
+			stageddeltaselect = null;
+			snapshotselect = null;
+			catchupdeleteselect = null;
+			reloaddeleteselect = null;
+		}
+		initialselect = createSelectInitial("").toString();
+	}
+
+	/**
+	 * @param deletedonly true to return the keys not found in the table only
+	 * @return the delta select without the leading "select " keyword, so optimizer hints can be added
+	 */
+	private StringBuffer createSelectDeltaBody(StringBuffer keys, String asof, boolean deletedonly) {
 		StringBuffer conditions = createRootJoinCondition(this);
 		StringBuffer select = new StringBuffer();
-		select.append("select ");
 		select.append("case when d.\"");
 		select.append(getPKColumns().get(0));
 		select.append("\" is null then 'D' else 'A' end as \"_CHANGE_TYPE\", \r\n");
 		select.append("l.\"_SCN\" as \"_SCN\",\r\n");
 		select.append("d.rowid as \"").append(SchemaConstants.SCHEMA_COLUMN_SOURCE_ROWID).append("\", \r\n");
 		select.append(createProjectionDelta(this, true));
-		select.append("\r\nfrom (select max(scn) as \"_SCN\", ");
+		select.append("\r\nfrom ");
+		select.append(keys);
+		select.append("left outer join \"");
+		select.append(oracleowner);
+		select.append("\".\"");
+		select.append(getOracletablename());
+		select.append("\"");
+		select.append(asof);
+		select.append(" d\r\n");
+		select.append("on (");
+		select.append(conditions);
+		if (hasRowfilter() && triggerfilter) {
+			/*
+			 * The triggers log the changes of rows matching the filter before or after the change only, so a row not
+			 * matching the filter now left it and is returned as deleted row
+			 */
+			select.append(" and (").append(rowfilter).append(")");
+		}
+		select.append(")");
+		if (deletedonly) {
+			select.append("\r\nwhere d.rowid is null");
+		} else if (hasRowfilter() && !triggerfilter) {
+			/*
+			 * The PKLOG contains the changes of all rows, the ones not matching the filter are not sent at all.
+			 * As it cannot be told if such a row left the filter, only rows no longer existing are returned as deleted.
+			 */
+			select.append("\r\nwhere (d.rowid is null or (").append(rowfilter).append("))");
+		}
+		return select;
+	}
+
+	/**
+	 * The inline view "l" with the primary keys of all changed rows and their max SCN.<br>
+	 * Without child tables these are the PKLOG rows of the table itself. With child tables the changes of the
+	 * children are translated to the root table's primary key with one statement per child table and
+	 * combined via union all.
+	 */
+	private StringBuffer createDeltaKeys() {
+		StringBuffer select = new StringBuffer();
+		if (hasChildtables()) {
+			select.append("(select max(\"_SCN\") as \"_SCN\", ");
+			for (int i = 0; i < getPKColumns().size(); i++) {
+				if ( i != 0) {
+					select.append(", ");
+				}
+				select.append("\"").append(getPKColumns().get(i)).append("\"");
+			}
+			select.append(" from (\r\n");
+			select.append("select scn as \"_SCN\", ");
+			for (int i = 0; i < getPKColumns().size(); i++) {
+				if ( i != 0) {
+					select.append(", ");
+				}
+				select.append("PK").append(i+1).append(" as \"").append(getPKColumns().get(i)).append("\"");
+			}
+			select.append(" from ").append(getPKLogTable()).append(" ");
+			select.append(" where scn > ? and scn < ? and table_name = '" 
+					+ getOracletablename() + "' and schema_name = '" + oracleowner + "'\r\n");
+			List<OracleTableMapping> tables = getAllTableMappings();
+			for (int i = 1; i < tables.size(); i++) {
+				select.append("union all\r\n");
+				select.append(createRootKeySelect(tables.get(i)));
+			}
+			select.append(") group by ");
+			for (int i = 0; i < getPKColumns().size(); i++) {
+				if ( i != 0) {
+					select.append(", ");
+				}
+				select.append("\"").append(getPKColumns().get(i)).append("\"");
+			}
+			select.append(") l \r\n");
+			return select;
+		}
+		select.append("(select max(scn) as \"_SCN\", ");
 		for (int i = 0; i < getPKColumns().size(); i++) {
 			if ( i != 0) {
 				select.append(", ");
@@ -288,7 +970,7 @@ public class OracleTableMapping {
 			select.append(getPKColumns().get(i));
 			select.append("\"");
 		}
-		select.append(" from pklog ");
+		select.append(" from ").append(getPKLogTable()).append(" ");
 		select.append(" where scn > ? and scn < ? and table_name = '" 
 				+ getOracletablename() + "' and schema_name = '" + oracleowner + "'\r\n");
 		select.append("group by ");
@@ -300,18 +982,241 @@ public class OracleTableMapping {
 			select.append(i+1);
 		}
 		select.append(") l \r\n");
-		select.append("left outer join \"");
-		select.append(oracleowner);
-		select.append("\".\"");
-		select.append(getOracletablename());
-		select.append("\" d\r\n");
-		select.append("on (");
-		select.append(conditions);
-		select.append(")");
 		return select;
 	}
 
-	private StringBuffer createSelectInitial() {
+	/**
+	 * The staged primary keys of this table, see {@link #getStagingInsert()}. The keys are unique already.
+	 * The table's keys are staged once for the widest window of all its mappings, the SCN of a key is the last change
+	 * within that window. Hence filtering by SCN above the mapping's lower bound returns the keys of the mapping's window.
+	 */
+	private StringBuffer createStagedKeys() {
+		StringBuffer select = new StringBuffer();
+		select.append("(select scn as \"_SCN\", ");
+		for (int i = 0; i < getPKColumns().size(); i++) {
+			if ( i != 0) {
+				select.append(", ");
+			}
+			select.append("PK").append(i+1).append(" as \"").append(getPKColumns().get(i)).append("\"");
+		}
+		select.append(" from ").append(getPKStageTable()).append(" ");
+		select.append(" where scn > ? and table_name = '" + getOracletablename() + "' and schema_name = '" + oracleowner + "'\r\n");
+		select.append(") l \r\n");
+		return select;
+	}
+
+	/**
+	 * The distinct primary keys of all rows deleted within the SCN window. With the trigger filter, rows leaving the
+	 * filter are logged as updates, hence all changed keys are returned and the delta body tells the deleted ones.
+	 */
+	private StringBuffer createDeletedKeys() {
+		StringBuffer select = new StringBuffer();
+		select.append("(select max(scn) as \"_SCN\"");
+		StringBuffer pklist = new StringBuffer();
+		for (int i = 0; i < getPKColumns().size(); i++) {
+			select.append(", PK").append(i+1).append(" as \"").append(getPKColumns().get(i)).append("\"");
+			if (i != 0) {
+				pklist.append(", ");
+			}
+			pklist.append("PK").append(i+1);
+		}
+		select.append(" from ").append(getPKLogTable()).append(" ");
+		select.append(" where scn > ? and scn < ? and table_name = '" 
+				+ getOracletablename() + "' and schema_name = '" + oracleowner + "'");
+		if (!hasRowfilter() || !triggerfilter) {
+			select.append(" and change_type = 'D'");
+		}
+		select.append("\r\ngroup by ").append(pklist);
+		select.append(") l \r\n");
+		return select;
+	}
+
+	/**
+	 * The primary keys of all rows matching the row filter as of an SCN.
+	 */
+	private StringBuffer createSnapshotKeys() {
+		StringBuffer select = new StringBuffer();
+		select.append("(select cast(? as number) as \"_SCN\"");
+		for (int i = 0; i < getPKColumns().size(); i++) {
+			select.append(", \"").append(getPKColumns().get(i)).append("\"");
+		}
+		select.append(" from \"").append(oracleowner).append("\".\"").append(getOracletablename()).append("\" as of scn ?");
+		if (hasRowfilter()) {
+			select.append(" where (").append(rowfilter).append(")");
+		}
+		select.append(") l \r\n");
+		return select;
+	}
+
+	private StringBuffer createStagingInsert() {
+		StringBuffer pklist = new StringBuffer();
+		for (int i = 0; i < getPKColumns().size(); i++) {
+			pklist.append(", PK").append(i+1);
+		}
+		StringBuffer insert = new StringBuffer();
+		insert.append("insert into " + getPKStageTable() + " (schema_name, table_name, scn").append(pklist).append(")\r\n");
+		insert.append("select schema_name, table_name, max(scn)").append(pklist).append(" from ").append(getPKLogTable()).append("\r\n");
+		insert.append("where scn > ? and scn < ? and table_name = '" 
+				+ getOracletablename() + "' and schema_name = '" + oracleowner + "'\r\n");
+		insert.append("group by schema_name, table_name").append(pklist);
+		return insert;
+	}
+
+	/**
+	 * Translate the PKLOG entries of a child table to the primary key of this, the root table.<br>
+	 * Walking up from the child to the root, the join columns of each level are taken from the values known so far,
+	 * initially the PKLOG's primary key values. Only if a join column is not known, the table of that level is joined.
+	 * Hence in the common case of the child's primary key containing the parent's key, deleted child rows
+	 * are found as well.
+	 * 
+	 * @param changed a child table of this mapping
+	 * @return select returning the SCN and the root primary key columns as nvarchar
+	 */
+	private StringBuffer createRootKeySelect(OracleTableMapping changed) {
+		List<OracleTableMapping> path = new ArrayList<>();
+		for (OracleTableMapping m = changed; m != null; m = m.getParent()) {
+			path.add(0, m);
+		}
+		StringBuffer joins = new StringBuffer();
+		Map<String, String> known = new HashMap<>();
+		for (int i = 0; i < changed.getPKColumns().size(); i++) {
+			known.put(changed.getPKColumns().get(i), "l.PK" + (i+1));
+		}
+		String knownalias = null; // if set, all columns of the current table are available via this alias
+		for (int level = path.size()-1; level > 0; level--) {
+			OracleTableMapping child = path.get(level);
+			boolean complete = true;
+			for (JoinColumn j : child.getJoincolumns()) {
+				if (knownalias == null && !known.containsKey(j.getChildcolumn())) {
+					complete = false;
+				}
+			}
+			if (!complete) {
+				/*
+				 * Join on the columns known, at the changed table its primary key, above the join columns of the level below
+				 */
+				String alias = "t" + level;
+				joins.append("join \"").append(child.getOracleowner()).append("\".\"").append(child.getOracletablename()).append("\" ").append(alias).append(" on (");
+				int i = 0;
+				for (String column : known.keySet()) {
+					if (i++ != 0) {
+						joins.append(" and ");
+					}
+					joins.append(alias).append(".\"").append(column).append("\" = ").append(known.get(column));
+				}
+				joins.append(")\r\n");
+				knownalias = alias;
+			}
+			Map<String, String> parentknown = new HashMap<>();
+			for (JoinColumn j : child.getJoincolumns()) {
+				String expression = knownalias != null ? knownalias + ".\"" + j.getChildcolumn() + "\"" : known.get(j.getChildcolumn());
+				parentknown.put(j.getParentcolumn(), expression);
+			}
+			known = parentknown;
+			knownalias = null;
+		}
+		List<String> rootkey = new ArrayList<>();
+		boolean complete = known.keySet().containsAll(getPKColumns());
+		if (!complete) {
+			joins.append("join \"").append(oracleowner).append("\".\"").append(getOracletablename()).append("\" t0 on (");
+			int i = 0;
+			for (String column : known.keySet()) {
+				if (i++ != 0) {
+					joins.append(" and ");
+				}
+				joins.append("t0.\"").append(column).append("\" = ").append(known.get(column));
+			}
+			joins.append(")\r\n");
+		}
+		for (String pk : getPKColumns()) {
+			rootkey.add(complete ? known.get(pk) : "t0.\"" + pk + "\"");
+		}
+		StringBuffer select = new StringBuffer();
+		select.append("select l.scn as \"_SCN\"");
+		for (int i = 0; i < rootkey.size(); i++) {
+			// the root branch returns the nvarchar PKLOG values, union all requires the same datatype
+			select.append(", to_nchar(").append(rootkey.get(i)).append(") as \"").append(getPKColumns().get(i)).append("\"");
+		}
+		select.append(" from ").append(getPKLogTable()).append(" l\r\n");
+		select.append(joins);
+		select.append("where l.scn > ? and l.scn < ? and l.table_name = '" 
+				+ changed.getOracletablename() + "' and l.schema_name = '" + changed.getOracleowner() + "'\r\n");
+		return select;
+	}
+
+	/**
+	 * Bind the SCN window to the delta select, once per PKLOG scan contained in the statement.
+	 * 
+	 * @param stmt the prepared delta select
+	 * @param min_transactionid exclusive lower SCN bound
+	 * @param max_transactionid exclusive upper SCN bound
+	 * @throws SQLException in case of bind errors
+	 */
+	public void setDeltaParameters(PreparedStatement stmt, long min_transactionid, long max_transactionid) throws SQLException {
+		int scans = getAllTableMappings().size();
+		for (int i = 0; i < scans; i++) {
+			stmt.setLong(i*2+1, min_transactionid);
+			stmt.setLong(i*2+2, max_transactionid);
+		}
+	}
+
+	/**
+	 * Select the rows of this child table belonging to a set of root rows. The root rows are identified by their rowid,
+	 * the result contains the rowid of the parent row and of the child row itself followed by the projection.
+	 * 
+	 * @param rowidcount number of root rowid bind variables
+	 * @return the select statement
+	 */
+	String createChildSelect(int rowidcount) {
+		List<OracleTableMapping> path = new ArrayList<>();
+		for (OracleTableMapping m = this; m != null; m = m.getParent()) {
+			path.add(0, m);
+		}
+		OracleTableMapping root = path.get(0);
+		StringBuffer select = new StringBuffer();
+		String parentalias = path.size() == 2 ? "d" : "t" + (path.size()-2);
+		select.append("select rowidtochar(").append(parentalias).append(".rowid) as \"_PARENT_ROWID\", ");
+		select.append("rowidtochar(c.rowid) as \"_ROWID\", \r\n");
+		for (int i = 0; i < getColumnmappings().size(); i++) {
+			ColumnMapping column = getColumnmappings().get(i);
+			if (i != 0) {
+				select.append(", ");
+			}
+			if (column.getSql().equals("\"" + column.getTableColumnName() + "\"")) {
+				select.append("c.");
+			}
+			select.append(column.getSql());
+			select.append(" as \"");
+			select.append(column.getAlias());
+			select.append("\"");
+		}
+		select.append("\r\nfrom \"").append(root.getOracleowner()).append("\".\"").append(root.getOracletablename()).append("\" d\r\n");
+		for (int level = 1; level < path.size(); level++) {
+			OracleTableMapping m = path.get(level);
+			String alias = level == path.size()-1 ? "c" : "t" + level;
+			String upperalias = level == 1 ? "d" : "t" + (level-1);
+			select.append("join \"").append(m.getOracleowner()).append("\".\"").append(m.getOracletablename()).append("\" ").append(alias).append(" on (");
+			for (int i = 0; i < m.getJoincolumns().size(); i++) {
+				JoinColumn j = m.getJoincolumns().get(i);
+				if (i != 0) {
+					select.append(" and ");
+				}
+				select.append(alias).append(".\"").append(j.getChildcolumn()).append("\" = ").append(upperalias).append(".\"").append(j.getParentcolumn()).append("\"");
+			}
+			select.append(")\r\n");
+		}
+		select.append("where d.rowid in (");
+		for (int i = 0; i < rowidcount; i++) {
+			if (i != 0) {
+				select.append(", ");
+			}
+			select.append("chartorowid(?)");
+		}
+		select.append(")");
+		return select.toString();
+	}
+
+	private StringBuffer createSelectInitial(String asof) {
 		StringBuffer select = new StringBuffer();
 		select.append("select 'I' as \"_CHANGE_TYPE\", \r\n");
 		select.append("null as \"_PRCESSED_SEQ\", \r\n");
@@ -321,7 +1226,12 @@ public class OracleTableMapping {
 		select.append(oracleowner);
 		select.append("\".\"");
 		select.append(getOracletablename());
-		select.append("\" d");
+		select.append("\"");
+		select.append(asof);
+		select.append(" d");
+		if (hasRowfilter()) {
+			select.append("\r\nwhere (").append(rowfilter).append(")");
+		}
 		return select;
 	}
 
@@ -427,6 +1337,24 @@ public class OracleTableMapping {
 
 	public void setColumnmappings(List<ColumnMapping> columnmappings) {
 		this.columnmappings = columnmappings;
+		this.columnmappingindex = null;
+	}
+
+	/**
+	 * @param alias the column alias as used in the select statements
+	 * @return the column mapping or null
+	 */
+	public ColumnMapping getColumnMapping(String alias) {
+		if (columnmappingindex == null) {
+			Map<String, ColumnMapping> index = new HashMap<>();
+			if (columnmappings != null) {
+				for (ColumnMapping m : columnmappings) {
+					index.put(m.getAlias(), m);
+				}
+			}
+			columnmappingindex = index;
+		}
+		return columnmappingindex.get(alias);
 	}
 
 	protected void createSchema(SchemaBuilder valueschema) throws ConnectorRuntimeException {
@@ -435,11 +1363,17 @@ public class OracleTableMapping {
 				for ( ColumnMapping m : getColumnmappings()) {
 					String oracledatatypestring = m.getOracledatatype();
 					String columnname = m.getAlias();
-					AvroField f = valueschema.add(columnname, getDataType(oracledatatypestring), null, true);
-					if (pkcolumns != null && pkcolumns.contains(m.getTableColumnName())) {
+					AvroField f = valueschema.add(columnname, getDataType(oracledatatypestring, isIntegralnumbers(), getUnconstrainednumber()), null, true);
+					if (parent == null && pkcolumns != null && pkcolumns.contains(m.getTableColumnName())) {
 						f.setPrimaryKey();
 					}
 				}
+				if (childtables != null) {
+					for (OracleTableMapping child : childtables) {
+						AvroRecordArray a = valueschema.addColumnRecordArray(child.getName(), null, child.getName(), null);
+						child.createSchema(a.getRecordSchema());
+					}
+				}
 				avroschema = valueschema.getSchema();
 			} else {
 				throw new ConnectorRuntimeException("The schema definition file does not contain any columns!", null, 
@@ -456,7 +1390,20 @@ public class OracleTableMapping {
 	}
 
 	public static Schema getDataType(String datatypestring) throws ConnectorRuntimeException {
-		Pattern p = Pattern.compile("(\\w*)\\s*\\(?\\s*(\\d*)\\s*\\,?\\s*(\\d*)\\s*\\)?.*");  // decimal(10,3) plus spaces anywhere, three groups
+		return getDataType(datatypestring, false, null);
+	}
+
+	/**
+	 * @param datatypestring the Oracle datatype, e.g. NUMBER(10, 0)
+	 * @param integralnumbers if true NUMBER(p, 0) is mapped to int for p&lt;=9 and to long for p&lt;=18
+	 * @param unconstrainednumber the Oracle datatype a NUMBER without precision is treated as, null for NUMBER(22, 0).
+	 * If neither this nor integralnumbers is set, NUMBER(p, s) is mapped to decimal(22, s) as always, unless p is larger.
+	 * A negative scale s is mapped to decimal(p - s, 0).
+	 * @return the Avro schema of the datatype
+	 * @throws ConnectorRuntimeException if the datatype is not known
+	 */
+	public static Schema getDataType(String datatypestring, boolean integralnumbers, String unconstrainednumber) throws ConnectorRuntimeException {
+		Pattern p = Pattern.compile("(\\w*)\\s*\\(?\\s*(\\d*)\\s*\\,?\\s*(-?\\d*)\\s*\\)?.*");  // decimal(10,3) plus spaces anywhere, three groups
 		Matcher m = p.matcher(datatypestring);
 		m.matches();
 		String datatype = m.group(1);
@@ -478,7 +1425,25 @@ public class OracleTableMapping {
 		case "NVARCHAR2":
 			return AvroNVarchar.getSchema(length);
 		case "NUMBER":
-			return AvroDecimal.getSchema(length, scale);
+			if (length == 0) {
+				return getDataType(unconstrainednumber != null && !unconstrainednumber.equals("NUMBER") ? unconstrainednumber : DEFAULT_UNCONSTRAINED_NUMBER,
+						integralnumbers, unconstrainednumber);
+			}
+			if (scale < 0) {
+				length -= scale;
+				scale = 0;
+			} else if (scale > length) {
+				length = scale; // number(3, 5) holds values like 0.00123
+			}
+			if (!integralnumbers && unconstrainednumber == null) {
+				return AvroDecimal.getSchema(Math.max(length, LEGACY_NUMBER_PRECISION), scale);
+			} else if (integralnumbers && scale == 0 && length <= 9) {
+				return AvroInt.getSchema();
+			} else if (integralnumbers && scale == 0 && length <= 18) {
+				return AvroLong.getSchema();
+			} else {
+				return AvroDecimal.getSchema(length, scale);
+			}
 		case "FLOAT":
 		case "BINARY_FLOAT": // 32-bit floating-point number
 			return AvroFloat.getSchema();
@@ -517,16 +1482,154 @@ public class OracleTableMapping {
 		}
 	}
 
+	/**
+	 * @return the Avro field positions of the primary key columns in the order of the primary key
+	 * @throws ConnectorRuntimeException if a primary key column is not part of the mapping
+	 * @throws SchemaBuilderException if the schema cannot be built
+	 */
+	@JsonIgnore
+	public int[] getPKFieldPositions() throws ConnectorRuntimeException, SchemaBuilderException {
+		Schema schema = getAvroSchema();
+		List<String> pks = getPKColumns() == null ? new ArrayList<>() : getPKColumns();
+		int[] positions = new int[pks.size()];
+		for (int i = 0; i < pks.size(); i++) {
+			String pk = pks.get(i);
+			Field field = null;
+			for (ColumnMapping m : getColumnmappings()) {
+				if (pk.equals(m.getTableColumnName())) {
+					field = schema.getField(AvroNameEncoder.encodeName(m.getAlias()));
+					break;
+				}
+			}
+			if (field == null) {
+				throw new ConnectorRuntimeException("The primary key column is not part of the mapping", null,
+						"Add the primary key column to the mapping", getName() + ": " + pk);
+			}
+			positions[i] = field.pos();
+		}
+		return positions;
+	}
+
 	@JsonIgnore
 	public String getDeltaSelect() {
 		return deltaselect;
 	}
+
+	/**
+	 * The statement copying the deduplicated primary keys of the SCN window from PKLOG into the
+	 * global temporary table PKSTAGE. All mappings of the same table can share the staged keys, if staged with the
+	 * lowest lower bound of them, see {@link #getStagedDeltaSelect(long)}.
+	 * 
+	 * @return the insert statement with the SCN window as the two bind variables or null if the mapping does not support staging
+	 */
+	@JsonIgnore
+	public String getStagingInsert() {
+		return staginginsert;
+	}
+
+	/**
+	 * The delta select reading the keys from PKSTAGE instead of PKLOG. The optimizer cannot know how many rows the
+	 * temporary table contains for this table, hence the number of staged rows is passed as cardinality hint.
+	 * The value is rounded up to the next power of ten to limit the number of distinct statements in the shared pool.
+	 * 
+	 * @param stagedrows number of rows staged for this table
+	 * @return the delta select with the exclusive lower SCN bound of this mapping as the only bind variable
+	 */
+	@JsonIgnore
+	public String getStagedDeltaSelect(long stagedrows) {
+		long cardinality = 10;
+		while (cardinality < stagedrows && cardinality < 1000000000L) {
+			cardinality *= 10;
+		}
+		return "select /*+ cardinality(l " + cardinality + ") */ " + stageddeltaselect;
+	}
+
+	/**
+	 * The full table as of an SCN, used by the initial load and to catch up a large backlog of changes.
+	 * 
+	 * @return the select with the SCN as the only bind variable or null if flashback is not supported for this mapping
+	 */
+	@JsonIgnore
+	public String getSnapshotSelect() {
+		return snapshotselect;
+	}
+
+	/**
+	 * Together with the {@link #getSnapshotSelect()} the rows deleted within the SCN window, which do not exist
+	 * as of the catch-up SCN, and with {@link #isTriggerfilter()} the rows no longer matching the row filter.
+	 * 
+	 * @return the select with the SCN window and the catch-up SCN as bind variables
+	 */
+	@JsonIgnore
+	public String getCatchupDeleteSelect() {
+		return catchupdeleteselect;
+	}
+
+	/**
+	 * Together with the {@link #getSnapshotSelect()} the rows existing as of an older SCN but not as of the reload SCN,
+	 * i.e. the rows deleted since the older SCN even if their PKLOG entries got purged already.
+	 * 
+	 * @return the select with the reload SCN, the older SCN and again the reload SCN as bind variables or null if flashback
+	 * is not supported for this mapping
+	 */
+	@JsonIgnore
+	public String getReloadDeleteSelect() {
+		return reloaddeleteselect;
+	}
+
+	/**
+	 * @return true if the delta can be read via the PKSTAGE table
+	 */
+	@JsonIgnore
+	public boolean supportsStaging() {
+		return staginginsert != null;
+	}
 	
+	/**
+	 * One column pair of the join condition between a child table and its parent
+	 */
+	public static class JoinColumn {
+		private String parentcolumn;
+		private String childcolumn;
+
+		public JoinColumn() {
+		}
+
+		public JoinColumn(String parentcolumn, String childcolumn) {
+			this.parentcolumn = parentcolumn;
+			this.childcolumn = childcolumn;
+		}
+
+		/**
+		 * @return the column name of the parent table
+		 */
+		public String getParentcolumn() {
+			return parentcolumn;
+		}
+
+		public void setParentcolumn(String parentcolumn) {
+			this.parentcolumn = parentcolumn;
+		}
+
+		/**
+		 * @return the column name of the child table
+		 */
+		public String getChildcolumn() {
+			return childcolumn;
+		}
+
+		public void setChildcolumn(String childcolumn) {
+			this.childcolumn = childcolumn;
+		}
+	}
+
 	public static class ColumnMapping {
 		private String alias;
 		private String sql;
 		private String oracledatatype;
 		private String tablecolumnname;
+		private Integer lobmaxlength;
+		private LobPolicy lobpolicy;
 
 		public ColumnMapping() {
 		}
@@ -536,6 +1639,15 @@ public class OracleTableMapping {
 			this.oracledatatype = oracledatatype;
 			setSql(sqlexpression);
 		}
+
+		ColumnMapping(ColumnMapping m) {
+			this.alias = m.alias;
+			this.sql = m.sql;
+			this.oracledatatype = m.oracledatatype;
+			this.tablecolumnname = m.tablecolumnname;
+			this.lobmaxlength = m.lobmaxlength;
+			this.lobpolicy = m.lobpolicy;
+		}
 		public String getAlias() {
 			return alias;
 		}
@@ -569,6 +1681,28 @@ public class OracleTableMapping {
 			this.oracledatatype = oracledatatype;
 		}
 
+		/**
+		 * @return for LOB columns the max number of characters/bytes to read, null to use the producer default
+		 */
+		public Integer getLobmaxlength() {
+			return lobmaxlength;
+		}
+
+		public void setLobmaxlength(Integer lobmaxlength) {
+			this.lobmaxlength = lobmaxlength;
+		}
+
+		/**
+		 * @return for LOB columns what to do with values larger than the max length, null to use the producer default
+		 */
+		public LobPolicy getLobpolicy() {
+			return lobpolicy;
+		}
+
+		public void setLobpolicy(LobPolicy lobpolicy) {
+			this.lobpolicy = lobpolicy;
+		}
+
 		@Override
 		public String toString() {
 			return alias;
@@ -591,14 +1725,87 @@ public class OracleTableMapping {
 		return oracletablename;
 	}
 
+	/**
+	 * @return the key of the table the triggers are created on, owner.tablename
+	 */
+	@JsonIgnore
+	public String getTableKey() {
+		return oracleowner + "." + getOracletablename();
+	}
+
+	/**
+	 * The WHEN conditions of the change logging triggers of one table. All mappings reading the table share its triggers,
+	 * hence a change is logged if it matches the trigger filter of any of them and unconditionally if one of them has none.
+	 */
+	public static class TriggerConditions {
+		private final Set<String> filters = new LinkedHashSet<>();
+		private final Set<String> updatefilters = new LinkedHashSet<>();
+		private boolean unfiltered = false;
+
+		/**
+		 * @param mapping a root or child mapping reading the table
+		 */
+		public void add(OracleTableMapping mapping) {
+			if (mapping.triggerfilter && mapping.hasRowfilter()) {
+				filters.add(mapping.getRowfilter("c"));
+				// The update trigger has to log rows moving out of the filter as well, these are sent as deletes
+				updatefilters.add(mapping.getRowfilter("c"));
+				updatefilters.add(mapping.getRowfilter("o"));
+			} else {
+				unfiltered = true;
+			}
+		}
+
+		/**
+		 * @param index 0..2 for the insert, update and delete trigger
+		 * @return the condition of the trigger's WHEN clause or null
+		 */
+		String getWhen(int index) {
+			if (unfiltered || filters.size() == 0) {
+				return null;
+			}
+			Set<String> conditions = index == 1 ? updatefilters : filters;
+			if (conditions.size() == 1) {
+				return conditions.iterator().next();
+			}
+			StringBuffer b = new StringBuffer();
+			for (String condition : conditions) {
+				if (b.length() != 0) {
+					b.append(" OR ");
+				}
+				b.append('(').append(condition).append(')');
+			}
+			return b.toString();
+		}
+	}
+
 	public class Triggers {
+		public static final int TRIGGER_COUNT = 3;
+		private final String[] suffixes = {"i", "u", "d"};
 		private String[] trigger = new String[3];
 		private boolean[] exists = new boolean[3];
 		
+		private String[] when = new String[3];
+		
 		public Triggers() throws ConnectorRuntimeException {
+			this(null);
+		}
+
+		/**
+		 * @param conditions the WHEN conditions of all mappings of the table, null to use this mapping's only
+		 * @throws ConnectorRuntimeException if the mapping is not valid
+		 */
+		public Triggers(TriggerConditions conditions) throws ConnectorRuntimeException {
 			exists[0] = false;
 			exists[1] = false;
 			exists[2] = false;
+			if (conditions == null) {
+				conditions = new TriggerConditions();
+				conditions.add(OracleTableMapping.this);
+			}
+			for (int i = 0; i < TRIGGER_COUNT; i++) {
+				when[i] = conditions.getWhen(i);
+			}
 			String sourceidentifier = "\"" + oracleowner + "\".\"" + getOracletablename() + "\"";
 			StringBuffer pklist1 = new StringBuffer();
 			StringBuffer pklist2 = new StringBuffer();
@@ -638,6 +1845,7 @@ public class OracleTableMapping {
 					" AFTER INSERT ON " + sourceidentifier + " \r\n" + 
 					" REFERENCING NEW as c \r\n" + 
 					" FOR EACH ROW \r\n" + 
+					getWhenClause(0) + 
 					" BEGIN \r\n" + 
 					"     INSERT INTO \"" + username + "\".PKLOG \r\n" +
 					"       (change_ts, schema_name, table_name, change_type, \r\n" +
@@ -651,6 +1859,7 @@ public class OracleTableMapping {
 					" AFTER UPDATE ON " + sourceidentifier + " \r\n" + 
 					" REFERENCING NEW as c OLD as o \r\n" + 
 					" FOR EACH ROW \r\n" + 
+					getWhenClause(1) + 
 					" BEGIN \r\n" + 
 					"     INSERT INTO \"" + username + "\".PKLOG \r\n" +
 					"       (change_ts, schema_name, table_name, change_type, \r\n" +
@@ -673,6 +1882,7 @@ public class OracleTableMapping {
 					" AFTER DELETE ON " + sourceidentifier + " \r\n" + 
 					" REFERENCING OLD as c \r\n" + 
 					" FOR EACH ROW \r\n" + 
+					getWhenClause(2) + 
 					" BEGIN \r\n" + 
 					"     INSERT INTO \"" + username + "\".PKLOG \r\n" +
 					"      (change_ts, schema_name, table_name, change_type, \r\n" +
@@ -703,6 +1913,48 @@ public class OracleTableMapping {
 			}
 		}
 
+		/**
+		 * @param index 0..2 for the insert, update and delete trigger
+		 * @return the trigger name as used in the create trigger statement
+		 */
+		public String getTriggerName(int index) {
+			return getOracletablename() + "_t_" + suffixes[index];
+		}
+
+		private String getWhenClause(int index) {
+			if (when[index] == null) {
+				return "";
+			} else {
+				return " WHEN (" + when[index] + ") \r\n";
+			}
+		}
+
+		/**
+		 * @param index 0..2 for the insert, update and delete trigger
+		 * @return the condition of the trigger's WHEN clause or null
+		 */
+		public String getTriggerWhen(int index) {
+			return when[index];
+		}
+
+		/**
+		 * @param index 0..2 for the insert, update and delete trigger
+		 * @return the full create trigger statement
+		 */
+		public String getTriggerSQL(int index) {
+			return trigger[index];
+		}
+
+		/**
+		 * @param index 0..2 for the insert, update and delete trigger
+		 * @return the PL/SQL block of the trigger as it is shown in all_triggers.trigger_body
+		 */
+		public String getTriggerBody(int index) {
+			String sql = trigger[index];
+			int pos = sql.indexOf(" BEGIN ");
+			return pos < 0 ? sql : sql.substring(pos + 1);
+		}
+
 		public void setFoundTrigger(String suffix) {
 			switch (suffix) {
 			case "i":
@@ -0,0 +1,358 @@
+package io.rtdi.bigdata.oracleconnector;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.rtdi.bigdata.connector.connectorframework.exceptions.ConnectorRuntimeException;
+
+/**
+ * Reports the unconsumed PKLOG data per producer and mapping, the keys changed most often and the runtime statistics
+ * of the mappings' delta selects.<br>
+ * All tables are analyzed with two statements per producer, one aggregation and one for the hot keys, and the
+ * delta select statistics are read from v$sqlstats via the sql_id, which is calculated from the statement text.
+ */
+public class PKLogAnalyzer {
+	private static final String SELECT_PENDING = "select schema_name, table_name, count(*), "
+			+ "count(distinct pk1 || '|' || pk2 || '|' || pk3 || '|' || pk4 || '|' || pk5 || '|' || pk6), min(change_ts) \r\n"
+			+ "from pklog where scn > ? group by schema_name, table_name";
+	private static final String SELECT_HOTKEYS = "select schema_name, table_name, pk1, pk2, pk3, pk4, pk5, pk6, c from (\r\n"
+			+ "  select schema_name, table_name, pk1, pk2, pk3, pk4, pk5, pk6, count(*) c, \r\n"
+			+ "    row_number() over (partition by schema_name, table_name order by count(*) desc) r \r\n"
+			+ "  from pklog where scn > ? group by schema_name, table_name, pk1, pk2, pk3, pk4, pk5, pk6) \r\n"
+			+ "where r <= ? order by schema_name, table_name, c desc";
+	private static final String SELECT_SQLSTATS = "select sql_id, plan_hash_value, executions, elapsed_time, buffer_gets, rows_processed \r\n"
+			+ "from v$sqlstats where sql_id = ?";
+	private static final String SQLID_ALPHABET = "0123456789abcdfghjkmnpqrstuvwxyz";
+
+	private Connection conn;
+
+	public PKLogAnalyzer(Connection conn) {
+		this.conn = conn;
+	}
+
+	/**
+	 * @param producername name of the producer
+	 * @param watermark the SCN the producer has processed everything below, null to analyze the entire PKLOG
+	 * @param mappings the mappings of the producer
+	 * @param topkeys number of hot keys to return per table
+	 * @return the statistics
+	 * @throws ConnectorRuntimeException if the PKLOG cannot be read
+	 */
+	public ProducerStatistics analyze(String producername, Long watermark, List<OracleTableMapping> mappings, int topkeys) throws ConnectorRuntimeException {
+		long scn = watermark == null ? 0L : watermark;
+		Map<String, TableStatistics> tables = new HashMap<>();
+		String sql = SELECT_PENDING;
+		try {
+			try (PreparedStatement stmt = conn.prepareStatement(sql);) {
+				stmt.setLong(1, scn);
+				try (ResultSet rs = stmt.executeQuery();) {
+					while (rs.next()) {
+						TableStatistics t = new TableStatistics();
+						t.pendingrows = rs.getLong(3);
+						t.distinctkeys = rs.getLong(4);
+						Timestamp ts = rs.getTimestamp(5);
+						t.oldestpending = ts == null ? null : ts.getTime();
+						tables.put(rs.getString(1) + "." + rs.getString(2), t);
+					}
+				}
+			}
+			if (topkeys > 0) {
+				sql = SELECT_HOTKEYS;
+				try (PreparedStatement stmt = conn.prepareStatement(sql);) {
+					stmt.setLong(1, scn);
+					stmt.setInt(2, topkeys);
+					try (ResultSet rs = stmt.executeQuery();) {
+						while (rs.next()) {
+							TableStatistics t = tables.get(rs.getString(1) + "." + rs.getString(2));
+							if (t != null) {
+								List<String> key = new ArrayList<>();
+								for (int i = 3; i <= 8; i++) {
+									String v = rs.getString(i);
+									if (v != null) {
+										key.add(v);
+									}
+								}
+								t.hotkeys.add(new HotKey(rs.getString(2), key, rs.getLong(9)));
+							}
+						}
+					}
+				}
+			}
+			ProducerStatistics ret = new ProducerStatistics(producername, watermark);
+			for (OracleTableMapping mapping : mappings) {
+				MappingStatistics m = new MappingStatistics(mapping.getName(), mapping.getOracleowner(), mapping.getOracletablename());
+				for (OracleTableMapping table : mapping.getAllTableMappings()) {
+					TableStatistics t = tables.get(table.getOracleowner() + "." + table.getOracletablename());
+					if (t != null) {
+						m.add(t);
+					}
+				}
+				mapping.createSelects();
+				sql = SELECT_SQLSTATS;
+				m.setDeltaselect(readSQLStatistics(mapping.getDeltaSelect()));
+				ret.getMappings().add(m);
+			}
+			return ret;
+		} catch (SQLException e) {
+			throw new ConnectorRuntimeException("Analyzing the PKLOG table failed", e,
+					"Does the user have permissions on v$sqlstats?", sql);
+		}
+	}
+
+	private List<SQLStatistics> readSQLStatistics(String deltaselect) throws SQLException {
+		List<SQLStatistics> ret = new ArrayList<>();
+		String sqlid = getSQLId(toOracleBindSyntax(deltaselect));
+		try (PreparedStatement stmt = conn.prepareStatement(SELECT_SQLSTATS);) {
+			stmt.setString(1, sqlid);
+			try (ResultSet rs = stmt.executeQuery();) {
+				while (rs.next()) {
+					SQLStatistics s = new SQLStatistics();
+					s.sqlid = rs.getString(1);
+					s.planhashvalue = rs.getLong(2);
+					s.executions = rs.getLong(3);
+					s.elapsedmicros = rs.getLong(4);
+					s.buffergets = rs.getLong(5);
+					s.rowsprocessed = rs.getLong(6);
+					ret.add(s);
+				}
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * The JDBC driver sends the statement with the ? placeholders replaced by :1, :2,...
+	 */
+	static String toOracleBindSyntax(String sql) {
+		StringBuilder b = new StringBuilder(sql.length() + 16);
+		boolean inliteral = false;
+		boolean inidentifier = false;
+		int bind = 1;
+		for (int i = 0; i < sql.length(); i++) {
+			char c = sql.charAt(i);
+			if (c == '\'' && !inidentifier) {
+				inliteral = !inliteral;
+			} else if (c == '"' && !inliteral) {
+				inidentifier = !inidentifier;
+			} else if (c == '?' && !inliteral && !inidentifier) {
+				b.append(':').append(bind++);
+				continue;
+			}
+			b.append(c);
+		}
+		return b.toString();
+	}
+
+	/**
+	 * Oracle's sql_id is the lower 64 bit of the MD5 hash of the statement text plus a trailing zero byte,
+	 * written as 13 characters base 32.
+	 */
+	static String getSQLId(String sql) {
+		try {
+			MessageDigest md = MessageDigest.getInstance("MD5");
+			md.update(sql.getBytes(StandardCharsets.UTF_8));
+			md.update((byte) 0);
+			byte[] d = md.digest();
+			long msb = ((d[11] & 0xffL) << 24) | ((d[10] & 0xffL) << 16) | ((d[9] & 0xffL) << 8) | (d[8] & 0xffL);
+			long lsb = ((d[15] & 0xffL) << 24) | ((d[14] & 0xffL) << 16) | ((d[13] & 0xffL) << 8) | (d[12] & 0xffL);
+			long value = (msb << 32) | lsb;
+			char[] id = new char[13];
+			for (int i = 12; i >= 0; i--) {
+				id[i] = SQLID_ALPHABET.charAt((int) (value & 0x1f));
+				value >>>= 5;
+			}
+			return new String(id);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("MD5 is not available", e);
+		}
+	}
+
+	public static class ProducerStatistics {
+		private String producername;
+		private Long watermark;
+		private List<MappingStatistics> mappings = new ArrayList<>();
+
+		public ProducerStatistics() {
+			super();
+		}
+
+		public ProducerStatistics(String producername, Long watermark) {
+			super();
+			this.producername = producername;
+			this.watermark = watermark;
+		}
+
+		public String getProducername() {
+			return producername;
+		}
+
+		/**
+		 * @return the SCN the producer has processed everything below, null if the producer did not poll in this server yet
+		 */
+		public Long getWatermark() {
+			return watermark;
+		}
+
+		public List<MappingStatistics> getMappings() {
+			return mappings;
+		}
+	}
+
+	public static class MappingStatistics {
+		private String mappingname;
+		private String oracleowner;
+		private String oracletablename;
+		private long pendingrows = 0;
+		private long distinctkeys = 0;
+		private Long oldestpending;
+		private List<HotKey> hotkeys = new ArrayList<>();
+		private List<SQLStatistics> deltaselect;
+
+		public MappingStatistics() {
+			super();
+		}
+
+		public MappingStatistics(String mappingname, String oracleowner, String oracletablename) {
+			super();
+			this.mappingname = mappingname;
+			this.oracleowner = oracleowner;
+			this.oracletablename = oracletablename;
+		}
+
+		private void add(TableStatistics t) {
+			pendingrows += t.pendingrows;
+			distinctkeys += t.distinctkeys;
+			if (oldestpending == null || (t.oldestpending != null && t.oldestpending < oldestpending)) {
+				oldestpending = t.oldestpending;
+			}
+			hotkeys.addAll(t.hotkeys);
+		}
+
+		public String getMappingname() {
+			return mappingname;
+		}
+
+		public String getOracleowner() {
+			return oracleowner;
+		}
+
+		public String getOracletablename() {
+			return oracletablename;
+		}
+
+		/**
+		 * @return number of PKLOG rows not yet processed, including the child tables
+		 */
+		public long getPendingrows() {
+			return pendingrows;
+		}
+
+		public long getDistinctkeys() {
+			return distinctkeys;
+		}
+
+		/**
+		 * @return the change timestamp of the oldest pending PKLOG row in epoch millis
+		 */
+		public Long getOldestpending() {
+			return oldestpending;
+		}
+
+		public List<HotKey> getHotkeys() {
+			return hotkeys;
+		}
+
+		/**
+		 * @return the statistics per execution plan of the delta select, empty if it is not in the shared pool
+		 */
+		public List<SQLStatistics> getDeltaselect() {
+			return deltaselect;
+		}
+
+		public void setDeltaselect(List<SQLStatistics> deltaselect) {
+			this.deltaselect = deltaselect;
+		}
+	}
+
+	public static class HotKey {
+		private String oracletablename;
+		private List<String> key;
+		private long changes;
+
+		public HotKey() {
+			super();
+		}
+
+		public HotKey(String oracletablename, List<String> key, long changes) {
+			super();
+			this.oracletablename = oracletablename;
+			this.key = key;
+			this.changes = changes;
+		}
+
+		/**
+		 * @return the table of the key, the root table or one of its child tables
+		 */
+		public String getOracletablename() {
+			return oracletablename;
+		}
+
+		public List<String> getKey() {
+			return key;
+		}
+
+		public long getChanges() {
+			return changes;
+		}
+	}
+
+	public static class SQLStatistics {
+		private String sqlid;
+		private long planhashvalue;
+		private long executions;
+		private long elapsedmicros;
+		private long buffergets;
+		private long rowsprocessed;
+
+		public String getSqlid() {
+			return sqlid;
+		}
+
+		public long getPlanhashvalue() {
+			return planhashvalue;
+		}
+
+		public long getExecutions() {
+			return executions;
+		}
+
+		public long getElapsedmicros() {
+			return elapsedmicros;
+		}
+
+		public long getBuffergets() {
+			return buffergets;
+		}
+
+		public long getRowsprocessed() {
+			return rowsprocessed;
+		}
+	}
+
+	private static class TableStatistics {
+		private long pendingrows;
+		private long distinctkeys;
+		private Long oldestpending;
+		private List<HotKey> hotkeys = new ArrayList<>();
+	}
+}
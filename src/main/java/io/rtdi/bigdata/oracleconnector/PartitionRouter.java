@@ -0,0 +1,41 @@
+package io.rtdi.bigdata.oracleconnector;
+
+import org.apache.avro.SchemaBuilderException;
+
+import io.rtdi.bigdata.connector.connectorframework.exceptions.ConnectorRuntimeException;
+import io.rtdi.bigdata.connector.pipeline.foundation.avro.JexlGenericData.JexlRecord;
+
+/**
+ * Assigns the records of a mapping to a topic partition by the hash of the primary key values.
+ * All changes of the same row end up in the same partition and hence stay in order.
+ * The hash is based on the canonical text of the key, see {@link KeyCanonicalizer}, so it is the same for the
+ * delta and the initial load records and does not change with a restart of the JVM.
+ */
+public class PartitionRouter {
+	private final KeyCanonicalizer key;
+
+	/**
+	 * @param mapping the mapping with the primary key columns
+	 * @throws ConnectorRuntimeException if a primary key column is not part of the mapping
+	 * @throws SchemaBuilderException if the mapping's schema cannot be built
+	 */
+	public PartitionRouter(OracleTableMapping mapping) throws ConnectorRuntimeException, SchemaBuilderException {
+		this(new KeyCanonicalizer(mapping));
+	}
+
+	PartitionRouter(KeyCanonicalizer key) {
+		this.key = key;
+	}
+
+	/**
+	 * @param record the record to send
+	 * @param partitions number of partitions of the topic
+	 * @return the partition or null if the topic has a single partition only
+	 */
+	public Integer getPartition(JexlRecord record, int partitions) {
+		if (partitions <= 1 || !key.hasKey()) {
+			return null;
+		}
+		return Math.floorMod(key.getKey(record).hashCode(), partitions);
+	}
+}
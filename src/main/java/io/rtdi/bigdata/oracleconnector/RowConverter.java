@@ -0,0 +1,461 @@
+package io.rtdi.bigdata.oracleconnector;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.JDBCType;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+
+import org.apache.avro.LogicalType;
+import org.apache.avro.Schema;
+import org.apache.avro.Schema.Field;
+import org.apache.avro.SchemaBuilderException;
+import org.apache.avro.generic.GenericData;
+
+import io.rtdi.bigdata.connector.connectorframework.exceptions.ConnectorRuntimeException;
+import io.rtdi.bigdata.connector.pipeline.foundation.avro.JexlGenericData.JexlRecord;
+import io.rtdi.bigdata.connector.pipeline.foundation.utils.AvroNameEncoder;
+import io.rtdi.bigdata.kafka.avro.datatypes.AvroType;
+import io.rtdi.bigdata.kafka.avro.datatypes.IAvroDatatype;
+import io.rtdi.bigdata.oracleconnector.LobReader.LobPolicy;
+import io.rtdi.bigdata.oracleconnector.OracleTableMapping.ColumnMapping;
+import oracle.jdbc.OracleResultSet;
+import oracle.sql.DATE;
+import oracle.sql.TIMESTAMP;
+import oracle.sql.TIMESTAMPTZ;
+
+/**
+ * Converts the rows of one result set into Avro records.<br>
+ * All the per column decisions - the Avro field position, the JDBC accessor to use, the Avro datatype
+ * conversion and the LOB settings - are made once when the statement got executed, so reading a row
+ * is only a sequence of accessor calls. The first columns of the delta and initial selects are the
+ * change type and the SCN/sequence, the conversion starts with the third column.<br>
+ * The accessor depends on the JDBC type and the Avro field's type, e.g. the delta selects return the primary key
+ * columns as text from the PKLOG, which are parsed into the field's type. Values converted into the Avro internal
+ * representation are put into the record by position, all others by name.
+ */
+public class RowConverter {
+	private static final int FIRST_DATA_COLUMN = 3;
+
+	private final Schema schema;
+	private final OracleTableMapping mapping;
+	private final int[] positions;
+	private final String[] fieldnames;
+	private final ColumnReader[] readers;
+	private final boolean[] converted;
+	private final int rowidindex;
+
+	/**
+	 * Reads the value of a single column.
+	 */
+	@FunctionalInterface
+	interface ColumnReader {
+		Object read(ResultSet rs, int index) throws SQLException, IOException, SchemaBuilderException;
+	}
+
+	/**
+	 * Reads the value of a single column in the Avro internal representation of the field's type.
+	 */
+	@FunctionalInterface
+	interface ConvertedReader extends ColumnReader {
+	}
+
+	/**
+	 * @param metadata the result set metadata of the executed statement
+	 * @param mapping the mapping the select belongs to
+	 * @param props the producer properties with the LOB defaults
+	 * @throws SQLException if the metadata cannot be read
+	 * @throws IOException if a column has an unsupported datatype
+	 * @throws SchemaBuilderException if the mapping's schema cannot be built
+	 */
+	public RowConverter(ResultSetMetaData metadata, OracleTableMapping mapping, OracleProducerProperties props) throws SQLException, IOException, SchemaBuilderException {
+		this(metadata, mapping, mapping.getAvroSchema(), props, 3);
+	}
+
+	/**
+	 * @param metadata the result set metadata of the executed statement
+	 * @param mapping the mapping the select belongs to, e.g. a child table
+	 * @param schema the record schema to create, e.g. the element schema of a child table's array
+	 * @param props the producer properties with the LOB defaults
+	 * @param rowidindex the column index of the rowid used for LOB references
+	 * @throws SQLException if the metadata cannot be read
+	 * @throws IOException if a column has an unsupported datatype
+	 */
+	public RowConverter(ResultSetMetaData metadata, OracleTableMapping mapping, Schema schema, OracleProducerProperties props, int rowidindex) throws SQLException, IOException {
+		this.mapping = mapping;
+		this.schema = schema;
+		this.rowidindex = rowidindex;
+		int columncount = metadata.getColumnCount();
+		int size = Math.max(0, columncount - FIRST_DATA_COLUMN + 1);
+		positions = new int[size];
+		fieldnames = new String[size];
+		readers = new ColumnReader[size];
+		converted = new boolean[size];
+		for (int i = FIRST_DATA_COLUMN; i <= columncount; i++) {
+			int k = i - FIRST_DATA_COLUMN;
+			String columnname = metadata.getColumnLabel(i);
+			String avrofieldname = AvroNameEncoder.encodeName(columnname);
+			Field field = schema.getField(avrofieldname);
+			fieldnames[k] = avrofieldname;
+			positions[k] = field == null ? -1 : field.pos();
+			readers[k] = createReader(JDBCType.valueOf(metadata.getColumnType(i)), metadata.getColumnTypeName(i), columnname, field, props, metadata.getColumnName(i));
+			converted[k] = field != null && readers[k] instanceof ConvertedReader;
+		}
+	}
+
+	/**
+	 * @param rs result set positioned on the row to convert
+	 * @return a new record with all values set
+	 * @throws SQLException if reading the values failed
+	 * @throws IOException if a value cannot be converted
+	 * @throws SchemaBuilderException if the schema is not valid
+	 */
+	public JexlRecord convert(ResultSet rs) throws SQLException, IOException, SchemaBuilderException {
+		JexlRecord r = new JexlRecord(schema);
+		for (int k = 0; k < readers.length; k++) {
+			Object value = readers[k].read(rs, k + FIRST_DATA_COLUMN);
+			if (value != null && rs.wasNull()) {
+				value = null;
+			}
+			if (converted[k]) {
+				r.put(positions[k], value);
+			} else {
+				r.put(fieldnames[k], value);
+			}
+		}
+		return r;
+	}
+
+	private ColumnReader createReader(JDBCType t, String typename, String columnname, Field field, OracleProducerProperties props, String sourcecolumnname) throws ConnectorRuntimeException {
+		switch (t) {
+		case BIGINT:
+			return (rs, i) -> rs.getLong(i);
+		case BINARY:
+		case VARBINARY:
+			if (field != null && getBaseSchema(field.schema()).getType() == Schema.Type.FIXED) {
+				/*
+				 * RAW(n) is an Avro fixed of size n, values shorter than n are padded with zeros
+				 */
+				Schema fixedschema = getBaseSchema(field.schema());
+				int size = fixedschema.getFixedSize();
+				return (rs, i) -> {
+					byte[] value = rs.getBytes(i);
+					if (value == null) {
+						return null;
+					} else if (value.length != size) {
+						value = Arrays.copyOf(value, size);
+					}
+					return new GenericData.Fixed(fixedschema, value);
+				};
+			} else {
+				return (rs, i) -> rs.getBytes(i);
+			}
+		case LONGVARBINARY:
+			return (rs, i) -> rs.getBytes(i);
+		case BLOB: {
+			ColumnMapping m = mapping.getColumnMapping(columnname);
+			int maxlength = getLobMaxLength(m, props);
+			LobPolicy policy = getLobPolicy(m, props);
+			return (rs, i) -> LobReader.readBlob(rs, i, maxlength, policy, getLobReference(rs, columnname, policy));
+		}
+		case BOOLEAN:
+			return (rs, i) -> rs.getBoolean(i);
+		case CHAR:
+		case LONGNVARCHAR:
+		case LONGVARCHAR:
+		case NCHAR:
+		case NVARCHAR:
+		case VARCHAR:
+			return createTextReader(field);
+		case CLOB:
+		case NCLOB: {
+			ColumnMapping m = mapping.getColumnMapping(columnname);
+			int maxlength = getLobMaxLength(m, props);
+			LobPolicy policy = getLobPolicy(m, props);
+			return (rs, i) -> LobReader.readClob(rs, i, maxlength, policy, getLobReference(rs, columnname, policy));
+		}
+		case DATE:
+			return createTemporalReader(typename, field, (rs, i) -> rs.getDate(i));
+		case DECIMAL:
+			return (rs, i) -> rs.getBigDecimal(i);
+		case DOUBLE:
+			return (rs, i) -> rs.getDouble(i);
+		case FLOAT:
+		case REAL:
+			return (rs, i) -> rs.getFloat(i);
+		case INTEGER:
+		case SMALLINT:
+		case TINYINT:
+			return (rs, i) -> rs.getInt(i);
+		case ROWID:
+			return (rs, i) -> rs.getString(i);
+		case NUMERIC: {
+			/*
+			 * Depending on the mapping a NUMBER can be an Avro int, long, double or decimal
+			 */
+			if (field == null) {
+				return (rs, i) -> rs.getBigDecimal(i);
+			}
+			Schema fieldschema = getBaseSchema(field.schema());
+			switch (fieldschema.getType()) {
+			case INT:
+				return (ConvertedReader) (rs, i) -> rs.getInt(i);
+			case LONG:
+				return (ConvertedReader) (rs, i) -> rs.getLong(i);
+			case DOUBLE:
+				return (ConvertedReader) (rs, i) -> rs.getDouble(i);
+			case FLOAT:
+				return (ConvertedReader) (rs, i) -> rs.getFloat(i);
+			case STRING:
+				return (ConvertedReader) (rs, i) -> rs.getString(i);
+			default:
+				IAvroDatatype d = AvroType.getAvroDataType(fieldschema);
+				return (ConvertedReader) (rs, i) -> d.convertToInternal(rs.getObject(i));
+			}
+		}
+		case TIME:
+			return createTemporalReader(typename, field, (rs, i) -> rs.getTime(i));
+		case TIMESTAMP:
+		case TIMESTAMP_WITH_TIMEZONE:
+			return createTemporalReader(typename, field, (rs, i) -> rs.getTimestamp(i));
+		case TIME_WITH_TIMEZONE:
+			return createTemporalReader(typename, field, (rs, i) -> rs.getTimestamp(i));
+		default:
+			throw new ConnectorRuntimeException("The select statement returns a datatype the connector cannot handle", null,
+					"Please create an issue", sourcecolumnname + ":" + t.getName());
+		}
+	}
+
+	/**
+	 * Oracle DATE and TIMESTAMP values are decoded from the datum bytes straight into the Avro int (epoch days)
+	 * or long (epoch micros), skipping the java.sql objects and their JVM time zone conversion.
+	 * Oracle reports DATE columns as JDBC TIMESTAMP, hence the Oracle type name decides which accessor to use.
+	 * 
+	 * All other types, e.g. TIMESTAMP WITH LOCAL TIME ZONE, are read as java.sql values and converted.
+	 * 
+	 * @param typename the Oracle datatype name from the result set metadata
+	 * @param field the Avro field
+	 * @param fallback reader returning a java.sql.Date, Time or Timestamp for all other cases
+	 * @return the reader
+	 */
+	private static ColumnReader createTemporalReader(String typename, Field field, ColumnReader fallback) {
+		if (field == null) {
+			return fallback;
+		}
+		Schema fieldschema = getBaseSchema(field.schema());
+		Schema.Type target = fieldschema.getType();
+		if (target != Schema.Type.INT && target != Schema.Type.LONG) {
+			return fallback;
+		}
+		String logicaltype = getLogicalTypeName(fieldschema);
+		boolean days = target == Schema.Type.INT;
+		if (typename != null && typename.equals("DATE") && !logicaltype.startsWith("time-")) {
+			return (ConvertedReader) (rs, i) -> {
+				DATE d = rs.unwrap(OracleResultSet.class).getDATE(i);
+				return d == null ? null : decode(d.shareBytes(), days);
+			};
+		} else if (typename != null && typename.startsWith("TIMESTAMP") && typename.endsWith("WITH TIME ZONE") && !typename.contains("LOCAL")
+				&& !logicaltype.startsWith("time-")) {
+			return (ConvertedReader) (rs, i) -> {
+				TIMESTAMPTZ d = rs.unwrap(OracleResultSet.class).getTIMESTAMPTZ(i);
+				return d == null ? null : decode(d.shareBytes(), days);
+			};
+		} else if (typename != null && typename.startsWith("TIMESTAMP") && !typename.contains("ZONE") && !logicaltype.startsWith("time-")) {
+			return (ConvertedReader) (rs, i) -> {
+				TIMESTAMP d = rs.unwrap(OracleResultSet.class).getTIMESTAMP(i);
+				return d == null ? null : decode(d.shareBytes(), days);
+			};
+		} else {
+			return (ConvertedReader) (rs, i) -> toAvroTemporal((java.util.Date) fallback.read(rs, i), target, logicaltype);
+		}
+	}
+
+	/**
+	 * @return the value as epoch days for an int, as time of day for the time logical types and as epoch micros or millis else
+	 */
+	private static Object toAvroTemporal(java.util.Date value, Schema.Type target, String logicaltype) {
+		if (value == null) {
+			return null;
+		}
+		if (value instanceof Time) {
+			long nanos = ((Time) value).toLocalTime().toNanoOfDay();
+			if (target == Schema.Type.INT) {
+				return (int) (nanos / 1000000L);
+			} else {
+				return nanos / 1000L;
+			}
+		}
+		LocalDateTime t;
+		if (value instanceof Timestamp) {
+			t = ((Timestamp) value).toLocalDateTime();
+		} else if (value instanceof java.sql.Date) {
+			t = ((java.sql.Date) value).toLocalDate().atStartOfDay();
+		} else {
+			t = new Timestamp(value.getTime()).toLocalDateTime();
+		}
+		return toAvroTemporal(t, target, logicaltype);
+	}
+
+	private static Object toAvroTemporal(LocalDateTime t, Schema.Type target, String logicaltype) {
+		if (logicaltype.startsWith("time-")) {
+			long nanos = t.toLocalTime().toNanoOfDay();
+			return target == Schema.Type.INT ? (Object) (int) (nanos / 1000000L) : (Object) (nanos / 1000L);
+		} else if (target == Schema.Type.INT) {
+			return (int) t.toLocalDate().toEpochDay();
+		}
+		long micros = t.toEpochSecond(ZoneOffset.UTC) * 1000000L + t.getNano() / 1000;
+		return logicaltype.equals("timestamp-millis") ? micros / 1000L : micros;
+	}
+
+	/**
+	 * Character columns are Avro strings usually. But the delta selects return the primary key columns from the PKLOG,
+	 * where all key values are stored as text, hence the text is parsed into the field's type. Texts the connector cannot
+	 * parse, e.g. a date in a session specific NLS format, are handed to the Avro datatype's conversion.
+	 */
+	private static ColumnReader createTextReader(Field field) {
+		if (field == null) {
+			return (rs, i) -> trim(rs.getString(i));
+		}
+		Schema fieldschema = getBaseSchema(field.schema());
+		String logicaltype = getLogicalTypeName(fieldschema);
+		IAvroDatatype d = AvroType.getAvroDataType(fieldschema);
+		switch (fieldschema.getType()) {
+		case STRING:
+			return (ConvertedReader) (rs, i) -> trim(rs.getString(i));
+		case INT:
+		case LONG:
+			if (logicaltype.equals("date") || logicaltype.startsWith("timestamp") || logicaltype.startsWith("time-")) {
+				Schema.Type target = fieldschema.getType();
+				KeyCanonicalizer.Kind kind = logicaltype.equals("date") ? KeyCanonicalizer.Kind.DATE : KeyCanonicalizer.Kind.TIMESTAMP;
+				return (ConvertedReader) (rs, i) -> {
+					String text = trim(rs.getString(i));
+					if (text == null) {
+						return null;
+					}
+					try {
+						String canonical = KeyCanonicalizer.canonical(text, kind, 0);
+						LocalDateTime t = kind == KeyCanonicalizer.Kind.DATE ? LocalDate.parse(canonical).atStartOfDay() : LocalDateTime.parse(canonical.replace(' ', 'T'));
+						return toAvroTemporal(t, target, logicaltype);
+					} catch (DateTimeParseException e) {
+						return d.convertToInternal(text);
+					}
+				};
+			} else if (fieldschema.getType() == Schema.Type.INT) {
+				return (ConvertedReader) (rs, i) -> {
+					String text = trim(rs.getString(i));
+					if (text == null) {
+						return null;
+					}
+					BigDecimal n = KeyCanonicalizer.toNumber(text, 0);
+					return n == null ? d.convertToInternal(text) : (Object) n.intValueExact();
+				};
+			} else {
+				return (ConvertedReader) (rs, i) -> {
+					String text = trim(rs.getString(i));
+					if (text == null) {
+						return null;
+					}
+					BigDecimal n = KeyCanonicalizer.toNumber(text, 0);
+					return n == null ? d.convertToInternal(text) : (Object) n.longValueExact();
+				};
+			}
+		case DOUBLE:
+		case FLOAT:
+		case BYTES:
+		case FIXED:
+			if (fieldschema.getType() == Schema.Type.DOUBLE || fieldschema.getType() == Schema.Type.FLOAT || logicaltype.equals("decimal")) {
+				Schema.Type target = fieldschema.getType();
+				return (ConvertedReader) (rs, i) -> {
+					String text = trim(rs.getString(i));
+					BigDecimal n = KeyCanonicalizer.toNumber(text, 0);
+					if (text == null) {
+						return null;
+					} else if (n == null) {
+						return d.convertToInternal(text);
+					} else if (target == Schema.Type.DOUBLE) {
+						return n.doubleValue();
+					} else if (target == Schema.Type.FLOAT) {
+						return n.floatValue();
+					} else {
+						return d.convertToInternal(n);
+					}
+				};
+			} else {
+				return (rs, i) -> trim(rs.getString(i));
+			}
+		default:
+			return (rs, i) -> trim(rs.getString(i));
+		}
+	}
+
+	private static String getLogicalTypeName(Schema schema) {
+		LogicalType logicaltype = schema.getLogicalType();
+		return logicaltype == null || logicaltype.getName() == null ? "" : logicaltype.getName();
+	}
+
+	private static Object decode(byte[] datum, boolean days) {
+		if (days) {
+			return OracleDatumDecoder.toEpochDays(datum);
+		} else {
+			return OracleDatumDecoder.toEpochMicros(datum);
+		}
+	}
+
+	/**
+	 * @return the non-null schema of a nullable union
+	 */
+	static Schema getBaseSchema(Schema schema) {
+		if (schema.getType() == Schema.Type.UNION) {
+			for (Schema s : schema.getTypes()) {
+				if (s.getType() != Schema.Type.NULL) {
+					return s;
+				}
+			}
+		}
+		return schema;
+	}
+
+	private static int getLobMaxLength(ColumnMapping m, OracleProducerProperties props) {
+		if (m != null && m.getLobmaxlength() != null) {
+			return m.getLobmaxlength();
+		} else {
+			return props.getLobMaxLength();
+		}
+	}
+
+	private static LobPolicy getLobPolicy(ColumnMapping m, OracleProducerProperties props) {
+		if (m != null && m.getLobpolicy() != null) {
+			return m.getLobpolicy();
+		} else {
+			return props.getLobPolicy();
+		}
+	}
+
+	/**
+	 * The reference text is needed only for the REFERENCE policy, it identifies the row by its rowid.
+	 */
+	private String getLobReference(ResultSet rs, String columnname, LobPolicy policy) throws SQLException {
+		if (policy == LobPolicy.REFERENCE) {
+			return mapping.getOracleowner() + "." + mapping.getOracletablename() + "." + columnname + " rowid=" + rs.getString(rowidindex);
+		} else {
+			return null;
+		}
+	}
+
+	private static String trim(String value) {
+		if (value == null || value.length() == 0) {
+			return null;
+		} else {
+			return value;
+		}
+	}
+
+}
@@ -0,0 +1,220 @@
+package io.rtdi.bigdata.oracleconnector;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.Collection;
+
+import org.apache.avro.SchemaBuilderException;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+
+import io.rtdi.bigdata.connector.connectorframework.exceptions.ConnectorRuntimeException;
+import io.rtdi.bigdata.connector.pipeline.foundation.avro.JexlGenericData.JexlRecord;
+
+/**
+ * Remembers a 64 bit hash of the last row image sent per primary key, so updates not changing any value can be suppressed.<br>
+ * The entries are kept off-heap in an open addressing hash table of 16 bytes per entry (primary key hash, row hash),
+ * hence even millions of keys do not put pressure on the garbage collector. The cache is seeded by the initial load and
+ * starts empty after a restart, which means the first change of every row is sent in any case.<br>
+ * The primary key values are hashed in their canonical form, see {@link KeyCanonicalizer}, as the delta returns them
+ * as text and the initial load as native values.
+ */
+public class RowHashCache {
+	private static final int ENTRY_SIZE = 16;
+	private static final long EMPTY = 0L;
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+	private static final long NULL_HASH = 0x9e3779b97f4a7c15L;
+
+	private final KeyCanonicalizer key;
+	private ByteBuffer table;
+	private int capacity;
+	private int size = 0;
+
+	/**
+	 * @param mapping the mapping the records belong to
+	 * @param initialcapacity expected number of rows
+	 * @throws ConnectorRuntimeException if the primary key is not part of the mapping
+	 * @throws SchemaBuilderException if the schema cannot be built
+	 */
+	public RowHashCache(OracleTableMapping mapping, int initialcapacity) throws ConnectorRuntimeException, SchemaBuilderException {
+		this(new KeyCanonicalizer(mapping), initialcapacity);
+	}
+
+	RowHashCache(KeyCanonicalizer key, int initialcapacity) {
+		this.key = key;
+		this.capacity = Integer.highestOneBit(Math.max(1024, initialcapacity * 2 - 1)) << 1;
+		this.table = ByteBuffer.allocateDirect(capacity * ENTRY_SIZE);
+	}
+
+	/**
+	 * Record the row image as sent for its primary key.
+	 *
+	 * @param record the record as sent
+	 * @return false if the same row image had been sent before, i.e. the record can be suppressed
+	 */
+	public boolean put(JexlRecord record) {
+		long keyhash = getKeyHash(record);
+		long value = getRowHash(record);
+		int slot = find(keyhash);
+		if (table.getLong(slot * ENTRY_SIZE) == keyhash) {
+			if (table.getLong(slot * ENTRY_SIZE + 8) == value) {
+				return false;
+			}
+		} else {
+			size++;
+			table.putLong(slot * ENTRY_SIZE, keyhash);
+		}
+		table.putLong(slot * ENTRY_SIZE + 8, value);
+		if (size * 4 > capacity * 3) {
+			resize();
+		}
+		return true;
+	}
+
+	/**
+	 * Forget the row image of a deleted row.
+	 *
+	 * @param record a record with the primary key values
+	 */
+	public void remove(JexlRecord record) {
+		long keyhash = getKeyHash(record);
+		int slot = find(keyhash);
+		if (table.getLong(slot * ENTRY_SIZE) == keyhash) {
+			// backward shift deletion keeps the probe chains intact without tombstones
+			int hole = slot;
+			int next = (hole + 1) & (capacity - 1);
+			while (table.getLong(next * ENTRY_SIZE) != EMPTY) {
+				int home = home(table.getLong(next * ENTRY_SIZE));
+				if (((next - home) & (capacity - 1)) >= ((next - hole) & (capacity - 1))) {
+					table.putLong(hole * ENTRY_SIZE, table.getLong(next * ENTRY_SIZE));
+					table.putLong(hole * ENTRY_SIZE + 8, table.getLong(next * ENTRY_SIZE + 8));
+					hole = next;
+				}
+				next = (next + 1) & (capacity - 1);
+			}
+			table.putLong(hole * ENTRY_SIZE, EMPTY);
+			table.putLong(hole * ENTRY_SIZE + 8, EMPTY);
+			size--;
+		}
+	}
+
+	/**
+	 * Forget all entries, e.g. because the transaction the records were sent in got aborted.
+	 */
+	public void clear() {
+		for (int i = 0; i < capacity * 2; i++) {
+			table.putLong(i * 8, EMPTY);
+		}
+		size = 0;
+	}
+
+	/**
+	 * @return number of primary keys in the cache
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the number of slots of the hash table
+	 */
+	int getCapacity() {
+		return capacity;
+	}
+
+	long getKeyHash(JexlRecord record) {
+		long h = hash(FNV_OFFSET, key.getKey(record));
+		return h == EMPTY ? NULL_HASH : h;
+	}
+
+	/**
+	 * The key fields are hashed in their canonical form, all other fields as is
+	 */
+	private long getRowHash(JexlRecord record) {
+		long h = FNV_OFFSET;
+		int fields = record.getSchema().getFields().size();
+		for (int i = 0; i < fields; i++) {
+			String keyvalue = key.getKeyValue(record, i);
+			h = hash(h, keyvalue != null ? keyvalue : record.get(i));
+		}
+		h = (h ^ 0x02) * FNV_PRIME;
+		return h == EMPTY ? NULL_HASH : h;
+	}
+
+	int home(long key) {
+		return (int) ((key ^ (key >>> 32)) & (capacity - 1));
+	}
+
+	/**
+	 * @return the slot containing the key or the empty slot the key would be stored in
+	 */
+	private int find(long key) {
+		int slot = home(key);
+		while (true) {
+			long k = table.getLong(slot * ENTRY_SIZE);
+			if (k == EMPTY || k == key) {
+				return slot;
+			}
+			slot = (slot + 1) & (capacity - 1);
+		}
+	}
+
+	private void resize() {
+		ByteBuffer old = table;
+		int oldcapacity = capacity;
+		capacity = capacity << 1;
+		table = ByteBuffer.allocateDirect(capacity * ENTRY_SIZE);
+		for (int i = 0; i < oldcapacity; i++) {
+			long key = old.getLong(i * ENTRY_SIZE);
+			if (key != EMPTY) {
+				int slot = find(key);
+				table.putLong(slot * ENTRY_SIZE, key);
+				table.putLong(slot * ENTRY_SIZE + 8, old.getLong(i * ENTRY_SIZE + 8));
+			}
+		}
+	}
+
+	/**
+	 * A 64 bit FNV-1a hash of the value's content. Unlike hashCode() it is content based for arrays and the
+	 * 64 bits make a collision, which would suppress a real change, practically impossible.
+	 */
+	private static long hash(long h, Object value) {
+		if (value == null) {
+			return (h ^ NULL_HASH) * FNV_PRIME;
+		} else if (value instanceof byte[]) {
+			for (byte b : (byte[]) value) {
+				h = (h ^ (b & 0xff)) * FNV_PRIME;
+			}
+			return (h ^ 0x01) * FNV_PRIME;
+		} else if (value instanceof ByteBuffer) {
+			ByteBuffer b = ((ByteBuffer) value).duplicate();
+			while (b.hasRemaining()) {
+				h = (h ^ (b.get() & 0xff)) * FNV_PRIME;
+			}
+			return (h ^ 0x01) * FNV_PRIME;
+		} else if (value instanceof GenericData.Fixed) {
+			return hash(h, ((GenericData.Fixed) value).bytes());
+		} else if (value instanceof GenericRecord) {
+			GenericRecord r = (GenericRecord) value;
+			int fields = r.getSchema().getFields().size();
+			for (int i = 0; i < fields; i++) {
+				h = hash(h, r.get(i));
+			}
+			return (h ^ 0x02) * FNV_PRIME;
+		} else if (value instanceof Collection) {
+			for (Object o : (Collection<?>) value) {
+				h = hash(h, o);
+			}
+			return (h ^ 0x03) * FNV_PRIME;
+		} else {
+			CharSequence s = value instanceof CharSequence ? (CharSequence) value : CharBuffer.wrap(value.toString());
+			for (int i = 0; i < s.length(); i++) {
+				char c = s.charAt(i);
+				h = (h ^ (c & 0xff)) * FNV_PRIME;
+				h = (h ^ (c >>> 8)) * FNV_PRIME;
+			}
+			return (h ^ 0x04) * FNV_PRIME;
+		}
+	}
+}
@@ -0,0 +1,165 @@
+package io.rtdi.bigdata.oracleconnector;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.avro.SchemaBuilderException;
+
+import io.rtdi.bigdata.connector.connectorframework.exceptions.ConnectorRuntimeException;
+import io.rtdi.bigdata.connector.pipeline.foundation.avro.JexlGenericData.JexlRecord;
+import io.rtdi.bigdata.kafka.avro.RowType;
+
+/**
+ * Processes the rows of a result set either serially or pipelined.<br>
+ * In pipelined mode a virtual thread fetches and converts the rows and hands them over in batches via a bounded queue,
+ * while the calling thread sends them. Hence the JDBC round trips and the sending overlap. The rows are sent in the
+ * order of the result set, and if the sending is slower the fetch thread blocks once the queue is full.
+ * The sending stays in the calling thread as the producer's transaction belongs to it.
+ */
+public class RowPipeline {
+	private static final int BATCH_SIZE = 256;
+	private static final int QUEUE_BATCHES = 8;
+	private static final List<Row> END = new ArrayList<>();
+
+	/**
+	 * Reads the current row of the result set, executed by the fetch thread.
+	 */
+	@FunctionalInterface
+	interface RowReader {
+		Row read(ResultSet rs) throws SQLException, IOException, SchemaBuilderException;
+	}
+
+	/**
+	 * Sends a row, executed by the calling thread.
+	 */
+	@FunctionalInterface
+	interface RowHandler {
+		void accept(JexlRecord r, RowType rowtype, String rowid) throws IOException, SQLException, SchemaBuilderException;
+	}
+
+	static class Row {
+		private final JexlRecord record;
+		private final RowType rowtype;
+		private final String rowid;
+
+		Row(JexlRecord record, RowType rowtype, String rowid) {
+			this.record = record;
+			this.rowtype = rowtype;
+			this.rowid = rowid;
+		}
+	}
+
+	private final BlockingQueue<List<Row>> queue = new ArrayBlockingQueue<>(QUEUE_BATCHES);
+	private volatile boolean cancelled = false;
+	private volatile Exception error = null;
+
+	private RowPipeline() {
+	}
+
+	/**
+	 * @param rs the executed statement's result set
+	 * @param reader converts the current row
+	 * @param handler sends the row
+	 * @param pipelined true to fetch in a separate thread
+	 * @return number of rows processed
+	 * @throws SQLException if reading the rows failed
+	 * @throws IOException if converting or sending a row failed
+	 * @throws SchemaBuilderException if the schema is not valid
+	 */
+	static long execute(ResultSet rs, RowReader reader, RowHandler handler, boolean pipelined) throws SQLException, IOException, SchemaBuilderException {
+		if (pipelined) {
+			return new RowPipeline().run(rs, reader, handler);
+		} else {
+			long count = 0;
+			while (rs.next()) {
+				Row row = reader.read(rs);
+				handler.accept(row.record, row.rowtype, row.rowid);
+				count++;
+			}
+			return count;
+		}
+	}
+
+	private long run(ResultSet rs, RowReader reader, RowHandler handler) throws SQLException, IOException, SchemaBuilderException {
+		Thread fetcher = Thread.ofVirtual().name("rowpipeline-fetch").start(() -> fetch(rs, reader));
+		long count = 0;
+		try {
+			while (true) {
+				List<Row> batch = queue.take();
+				if (batch == END) {
+					break;
+				}
+				for (Row row : batch) {
+					handler.accept(row.record, row.rowtype, row.rowid);
+				}
+				count += batch.size();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ConnectorRuntimeException("Sending the rows got interrupted", e, null, null);
+		} finally {
+			cancelled = true;
+			queue.clear(); // unblock the fetch thread in case sending failed
+			try {
+				fetcher.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		Exception e = error;
+		if (e instanceof SQLException) {
+			throw (SQLException) e;
+		} else if (e instanceof IOException) {
+			throw (IOException) e;
+		} else if (e instanceof SchemaBuilderException) {
+			throw (SchemaBuilderException) e;
+		} else if (e != null) {
+			throw new ConnectorRuntimeException("Fetching the rows failed", e, null, null);
+		}
+		return count;
+	}
+
+	private void fetch(ResultSet rs, RowReader reader) {
+		try {
+			List<Row> batch = new ArrayList<>(BATCH_SIZE);
+			while (!cancelled && rs.next()) {
+				batch.add(reader.read(rs));
+				if (batch.size() == BATCH_SIZE) {
+					if (!put(batch)) {
+						return;
+					}
+					batch = new ArrayList<>(BATCH_SIZE);
+				}
+			}
+			if (batch.size() != 0) {
+				put(batch);
+			}
+		} catch (Exception e) {
+			error = e;
+		} finally {
+			put(END);
+		}
+	}
+
+	/**
+	 * @return false if the pipeline got cancelled while waiting for space in the queue
+	 */
+	private boolean put(List<Row> batch) {
+		try {
+			while (!cancelled) {
+				if (queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+					return true;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return false;
+	}
+}
@@ -0,0 +1,112 @@
+package io.rtdi.bigdata.oracleconnector;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import io.rtdi.bigdata.connector.connectorframework.exceptions.ConnectorRuntimeException;
+
+/**
+ * Detects DDL changes of the mapped tables by comparing the last_ddl_time of all_objects with the value seen before.
+ * All tables are checked with a single query, so it is cheap enough to be executed once per poll.<br>
+ * A changed last_ddl_time does not necessarily mean the columns changed, e.g. grants and trigger changes modify it as well.
+ * The caller has to compare the table definition to find out.
+ */
+public class SchemaDriftDetector {
+	/**
+	 * Oracle limits an in-list to 1000 elements
+	 */
+	private static final int MAX_INLIST = 1000;
+
+	/**
+	 * Key is owner.table_name, value the last_ddl_time seen or null if not read yet
+	 */
+	private final Map<String, Timestamp> ddltimes = new HashMap<>();
+
+	public SchemaDriftDetector() {
+	}
+
+	/**
+	 * Add the mapping's tables, including its child tables, to the tables being checked.
+	 *
+	 * @param mapping the mapping
+	 */
+	public void register(OracleTableMapping mapping) {
+		for (OracleTableMapping table : mapping.getAllTableMappings()) {
+			String key = getKey(table.getOracleowner(), table.getOracletablename());
+			if (!ddltimes.containsKey(key)) {
+				ddltimes.put(key, null);
+			}
+		}
+	}
+
+	/**
+	 * @param owner table owner
+	 * @param tablename table name
+	 * @return the key as used in the set of changed tables
+	 */
+	public static String getKey(String owner, String tablename) {
+		return owner + "." + tablename;
+	}
+
+	/**
+	 * Read the current last_ddl_time of all registered tables and remember it.
+	 * Tables read the first time are not reported as changed, neither are tables that do not exist.
+	 *
+	 * @param conn the connection to use
+	 * @return the owner.table_name of all tables with a changed last_ddl_time
+	 * @throws ConnectorRuntimeException if the dictionary cannot be read
+	 */
+	public Set<String> getChangedTables(Connection conn) throws ConnectorRuntimeException {
+		Set<String> changed = new HashSet<>();
+		List<String> keys = new ArrayList<>(ddltimes.keySet());
+		for (int start = 0; start < keys.size(); start += MAX_INLIST) {
+			List<String> part = keys.subList(start, Math.min(keys.size(), start + MAX_INLIST));
+			String sql = createSelect(part.size());
+			try (PreparedStatement stmt = conn.prepareStatement(sql);) {
+				int index = 1;
+				for (String key : part) {
+					int pos = key.indexOf('.');
+					stmt.setString(index++, key.substring(0, pos));
+					stmt.setString(index++, key.substring(pos + 1));
+				}
+				try (ResultSet rs = stmt.executeQuery();) {
+					while (rs.next()) {
+						String key = getKey(rs.getString(1), rs.getString(2));
+						Timestamp ddltime = rs.getTimestamp(3);
+						Timestamp previous = ddltimes.put(key, ddltime);
+						if (previous != null && ddltime != null && !previous.equals(ddltime)) {
+							changed.add(key);
+						}
+					}
+				}
+			} catch (SQLException e) {
+				throw new ConnectorRuntimeException("Reading the last DDL time of the source tables failed", e,
+						"Does the user have permissions on all_objects?", sql);
+			}
+		}
+		return changed;
+	}
+
+	private static String createSelect(int tablecount) {
+		StringBuffer b = new StringBuffer();
+		b.append("select owner, object_name, last_ddl_time from all_objects \r\n");
+		b.append("where object_type = 'TABLE' and (owner, object_name) in (");
+		for (int i = 0; i < tablecount; i++) {
+			if (i != 0) {
+				b.append(", ");
+			}
+			b.append("(?, ?)");
+		}
+		b.append(")");
+		return b.toString();
+	}
+}
@@ -0,0 +1,365 @@
+package io.rtdi.bigdata.oracleconnector;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import io.rtdi.bigdata.connector.connectorframework.exceptions.ConnectorRuntimeException;
+
+/**
+ * All producers of the same database user share one PKLOG table. Instead of every producer querying the open transactions,
+ * scanning the PKLOG for the changed tables and purging it, one reader per database user does that work once and hands
+ * the result to all subscribed producers.<br>
+ * The upper bound SCN is reused for a short time, so producers polling at the same time end up with the same SCN window
+ * and the changed tables of that window are read once. The queries run outside the reader's monitor, so producers
+ * needing nothing new are not blocked by them.<br>
+ * The PKLOG is purged by one producer per server. The readers of all servers persist the SCNs their producers committed
+ * in the PKLOG_WATERMARK table and rows are not purged beyond the lowest of them, see {@link #purge(Connection)}.<br>
+ * The reader does not own a database session, the statements are executed with the session the calling producer leased
+ * from the {@link OracleConnectionPool}.
+ */
+public class SharedChangeReader {
+	private static final Map<String, SharedChangeReader> readers = new HashMap<>();
+	private static final long UPPER_BOUND_REUSE_MILLIS = 1000L;
+	private static final long PURGE_INTERVAL_MILLIS = 3600000L;
+	private static final int WINDOW_CACHE_SIZE = 16;
+	private static final String SELECT_UPPER_BOUND = "select nvl(min(start_scn), dbms_flashback.get_system_change_number), "
+			+ "dbms_flashback.get_system_change_number from gv$transaction";
+	private static final String SELECT_CHANGED_TABLES = "select distinct table_name from PKLOG where scn > ? and scn < ?";
+	private static final String MERGE_WATERMARK = "merge into PKLOG_WATERMARK w using (select ? as subscriber, ? as scn from dual) s \r\n"
+			+ "on (w.subscriber = s.subscriber) \r\n"
+			+ "when matched then update set w.scn = s.scn, w.change_ts = current_timestamp \r\n"
+			+ "when not matched then insert (subscriber, scn, change_ts) values (s.subscriber, s.scn, current_timestamp)";
+	private static final String DELETE_STALE_WATERMARKS = "delete from PKLOG_WATERMARK where change_ts < current_timestamp - 7";
+	private static final String DELETE_PKLOG = "delete from PKLOG l where l.change_ts < current_timestamp - 7 \r\n"
+			+ "and not exists (select 1 from PKLOG_WATERMARK w where w.scn <= l.scn)";
+
+	protected final Logger logger = LogManager.getLogger(this.getClass().getName());
+	private final String key;
+	/**
+	 * The producers and their last committed SCN, null if the producer did not commit anything yet
+	 */
+	private final Map<String, Long> watermarks = new HashMap<>();
+	private UpperBound upperbound = new UpperBound(0L, 0L);
+	private long upperboundtime = 0L;
+	private boolean sampling = false;
+	private long lastpurge = 0L;
+	/**
+	 * The changed tables per SCN window, the first caller of a window reads them, all others wait for its result
+	 */
+	private final Map<String, CompletableFuture<Set<String>>> windows = new LinkedHashMap<String, CompletableFuture<Set<String>>>() {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, CompletableFuture<Set<String>>> eldest) {
+			return size() > WINDOW_CACHE_SIZE;
+		}
+	};
+
+	private SharedChangeReader(String key) {
+		this.key = key;
+	}
+
+	/**
+	 * @param props the connection properties, producers with the same JDBC URL and user share the reader
+	 * @param subscriber unique name of the producer instance
+	 * @return the shared reader
+	 */
+	public static SharedChangeReader subscribe(OracleConnectionProperties props, String subscriber) {
+		String key = props.getJDBCURL() + "#" + props.getUsername();
+		synchronized (readers) {
+			SharedChangeReader reader = readers.get(key);
+			if (reader == null) {
+				reader = new SharedChangeReader(key);
+				readers.put(key, reader);
+			}
+			reader.addSubscriber(subscriber);
+			return reader;
+		}
+	}
+
+	/**
+	 * Remove the producer, the last one removes the reader.
+	 *
+	 * @param subscriber unique name of the producer instance
+	 */
+	public void unsubscribe(String subscriber) {
+		synchronized (readers) {
+			if (removeSubscriber(subscriber)) {
+				readers.remove(key);
+			}
+		}
+	}
+
+	private synchronized void addSubscriber(String subscriber) {
+		if (!watermarks.containsKey(subscriber)) {
+			watermarks.put(subscriber, null);
+		}
+	}
+
+	/**
+	 * @return true if this was the last subscriber
+	 */
+	private synchronized boolean removeSubscriber(String subscriber) {
+		watermarks.remove(subscriber);
+		return watermarks.size() == 0;
+	}
+
+	/**
+	 * The upper bound of an SCN window together with the primary's SCN sampled at the same time.<br>
+	 * The triggers stamp the PKLOG rows with the SCN of the change, not of the commit. A transaction with PKLOG rows
+	 * below the upper bound was not open when sampling, hence it is committed at or below the current SCN. Reading the
+	 * tables as of, or from a standby having applied, the current SCN is required to see the changes of the window.
+	 */
+	public static class UpperBound {
+		private final long scn;
+		private final long currentscn;
+
+		private UpperBound(long scn, long currentscn) {
+			this.scn = scn;
+			this.currentscn = Math.max(scn, currentscn);
+		}
+
+		/**
+		 * @return the SCN all transactions with PKLOG rows below are committed
+		 */
+		public long getSCN() {
+			return scn;
+		}
+
+		/**
+		 * @return the primary's SCN when the upper bound got sampled, all changes of the window are committed as of this SCN
+		 */
+		public long getCurrentSCN() {
+			return currentscn;
+		}
+
+		@Override
+		public String toString() {
+			return scn + " (current SCN " + currentscn + ")";
+		}
+	}
+
+	/**
+	 * If the cached upper bound is outdated, one caller samples a new one while the others continue with the cached one.
+	 * An older upper bound is always valid, it just results in a smaller SCN window.
+	 *
+	 * @param conn the session of the caller
+	 * @param min_transactionid the lower bound of the caller
+	 * @return the SCN all transactions below are committed
+	 * @throws ConnectorRuntimeException if the open transactions cannot be read
+	 */
+	public UpperBound getUpperBound(Connection conn, long min_transactionid) throws ConnectorRuntimeException {
+		UpperBound ret;
+		long now = System.currentTimeMillis();
+		boolean sample;
+		synchronized (this) {
+			ret = upperbound;
+			sample = ret.getSCN() < min_transactionid || (!sampling && now - upperboundtime > UPPER_BOUND_REUSE_MILLIS);
+			if (sample) {
+				sampling = true;
+			}
+		}
+		if (sample) {
+			try {
+				ret = readUpperBound(conn);
+			} finally {
+				synchronized (this) {
+					sampling = false;
+					if (ret.getSCN() >= upperbound.getSCN()) {
+						upperbound = ret;
+						upperboundtime = now;
+					}
+				}
+			}
+		}
+		if (ret.getSCN() < min_transactionid) {
+			return new UpperBound(min_transactionid, ret.getCurrentSCN());
+		}
+		return ret;
+	}
+
+	private UpperBound readUpperBound(Connection conn) throws ConnectorRuntimeException {
+		try (PreparedStatement stmt = conn.prepareStatement(SELECT_UPPER_BOUND);) {
+			try (ResultSet rs = stmt.executeQuery();) {
+				if (rs.next()) {
+					return new UpperBound(rs.getLong(1), rs.getLong(2));
+				}
+				throw new ConnectorRuntimeException("Selecting the upper bound SCN returned no row", null, null, SELECT_UPPER_BOUND);
+			}
+		} catch (SQLException e) {
+			throw new ConnectorRuntimeException("Selecting the upper bound SCN failed", e,
+					"Missing permissions on Oracle dictinary view gv$transaction?", SELECT_UPPER_BOUND);
+		}
+	}
+
+	/**
+	 * @param conn the session of the caller
+	 * @param min_transactionid exclusive lower SCN
+	 * @param max_transactionid exclusive upper SCN
+	 * @return the names of all tables with PKLOG entries in the SCN window
+	 * @throws ConnectorRuntimeException if the PKLOG cannot be read
+	 */
+	public Set<String> getChangedTables(Connection conn, long min_transactionid, long max_transactionid) throws ConnectorRuntimeException {
+		String window = min_transactionid + "-" + max_transactionid;
+		CompletableFuture<Set<String>> tables;
+		boolean read = false;
+		synchronized (this) {
+			tables = windows.get(window);
+			if (tables == null) {
+				tables = new CompletableFuture<>();
+				windows.put(window, tables);
+				read = true;
+			}
+		}
+		if (read) {
+			try {
+				tables.complete(readChangedTables(conn, min_transactionid, max_transactionid));
+			} catch (ConnectorRuntimeException e) {
+				abandon(window, tables, e);
+				throw e;
+			} catch (RuntimeException e) {
+				abandon(window, tables, e);
+				throw e;
+			}
+		}
+		try {
+			return tables.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ConnectorRuntimeException("Waiting for the changed tables got interrupted", e, null, window);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof ConnectorRuntimeException) {
+				throw (ConnectorRuntimeException) e.getCause();
+			}
+			throw new ConnectorRuntimeException("Reading the changed tables from PKLOG failed", e.getCause(), null, SELECT_CHANGED_TABLES);
+		}
+	}
+
+	/**
+	 * Remove the failed window, so the next caller reads it again, and fail the callers waiting for it
+	 */
+	private void abandon(String window, CompletableFuture<Set<String>> tables, Throwable e) {
+		synchronized (this) {
+			windows.remove(window);
+		}
+		tables.completeExceptionally(e);
+	}
+
+	private Set<String> readChangedTables(Connection conn, long min_transactionid, long max_transactionid) throws ConnectorRuntimeException {
+		Set<String> tables = new HashSet<>();
+		try (PreparedStatement stmt = conn.prepareStatement(SELECT_CHANGED_TABLES);) {
+			stmt.setLong(1, min_transactionid);
+			stmt.setLong(2, max_transactionid);
+			try (ResultSet rs = stmt.executeQuery();) {
+				while (rs.next()) {
+					tables.add(rs.getString(1));
+				}
+			}
+		} catch (SQLException e) {
+			throw new ConnectorRuntimeException("Reading the changed tables from PKLOG failed", e, null, SELECT_CHANGED_TABLES);
+		}
+		return Collections.unmodifiableSet(tables);
+	}
+
+	/**
+	 * @param props the connection properties
+	 * @param producername name of the producer
+	 * @return the lowest SCN committed by the instances of the producer or null if the producer is not active in this server
+	 * or did not commit yet
+	 */
+	public static Long getWatermark(OracleConnectionProperties props, String producername) {
+		SharedChangeReader reader;
+		synchronized (readers) {
+			reader = readers.get(props.getJDBCURL() + "#" + props.getUsername());
+		}
+		return reader == null ? null : reader.getLowWatermark(producername + "#");
+	}
+
+	private synchronized Long getLowWatermark(String subscriberprefix) {
+		Long ret = null;
+		for (Map.Entry<String, Long> e : watermarks.entrySet()) {
+			if (e.getKey().startsWith(subscriberprefix)) {
+				if (e.getValue() == null) {
+					return null;
+				} else if (ret == null || e.getValue() < ret) {
+					ret = e.getValue();
+				}
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * @param subscriber unique name of the producer instance
+	 * @param transactionid the SCN the producer has processed everything below
+	 */
+	public synchronized void commit(String subscriber, long transactionid) {
+		watermarks.put(subscriber, transactionid);
+	}
+
+	/**
+	 * Delete the outdated PKLOG data, at most once per hour for all producers of this server.<br>
+	 * Producers of other servers are not known to this reader, hence the committed SCNs of all producers are persisted in
+	 * the PKLOG_WATERMARK table, each server refreshing the ones of its producers with every purge. Rows are deleted only if
+	 * older than 7 days and below all watermarks refreshed within these 7 days. A producer not having committed yet does not
+	 * hold back the purge, as before the 7 days retention is all it can rely on.
+	 *
+	 * @param conn the session of the caller, it gets committed
+	 * @throws ConnectorRuntimeException if the delete failed
+	 */
+	public void purge(Connection conn) throws ConnectorRuntimeException {
+		long now = System.currentTimeMillis();
+		Map<String, Long> committed;
+		long previouspurge;
+		synchronized (this) {
+			if (now - lastpurge < PURGE_INTERVAL_MILLIS) {
+				return;
+			}
+			previouspurge = lastpurge;
+			lastpurge = now; // the other producers skip the purge meanwhile
+			committed = new HashMap<>(watermarks);
+		}
+		String sql = MERGE_WATERMARK;
+		try {
+			try (PreparedStatement stmt = conn.prepareStatement(sql);) {
+				for (Map.Entry<String, Long> e : committed.entrySet()) {
+					if (e.getValue() != null) {
+						stmt.setString(1, e.getKey());
+						stmt.setLong(2, e.getValue());
+						stmt.addBatch();
+					}
+				}
+				stmt.executeBatch();
+			}
+			sql = DELETE_STALE_WATERMARKS;
+			try (PreparedStatement stmt = conn.prepareStatement(sql);) {
+				stmt.executeUpdate();
+			}
+			sql = DELETE_PKLOG;
+			try (PreparedStatement stmt = conn.prepareStatement(sql);) {
+				int count = stmt.executeUpdate();
+				logger.debug("Deleted {} outdated rows from PKLOG", count);
+			}
+			conn.commit();
+		} catch (SQLException e) {
+			synchronized (this) {
+				lastpurge = previouspurge;
+			}
+			throw new ConnectorRuntimeException("Deleting outdated data from the PKLOG table failed", e,
+					"Does the PKLOG_WATERMARK table exist?", sql);
+		}
+	}
+}
@@ -0,0 +1,428 @@
+package io.rtdi.bigdata.oracleconnector;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import io.rtdi.bigdata.connector.connectorframework.exceptions.ConnectorRuntimeException;
+import io.rtdi.bigdata.oracleconnector.OracleTableMapping.TriggerConditions;
+import io.rtdi.bigdata.oracleconnector.OracleTableMapping.Triggers;
+
+/**
+ * Compares the change logging triggers in the database with the ones the mappings require and
+ * creates, replaces or drops them.<br>
+ * The comparison reads all triggers with a single dictionary query, the changes are executed in parallel
+ * with one connection per worker and a failure of one table does not stop the others.
+ */
+public class TriggerDeploymentPlanner {
+	private static final String SELECT_TRIGGERS = "select table_owner, table_name, trigger_name, when_clause, trigger_body from all_triggers \r\n"
+			+ "where owner = user and trigger_name like table_name || '\\_t\\__' escape '\\'";
+
+	private static final int BODY = 0;
+	private static final int WHEN = 1;
+
+	public enum Action {
+		CREATE,
+		REPLACE,
+		DROP
+	}
+
+	private Connection conn;
+
+	public TriggerDeploymentPlanner(Connection conn) {
+		this.conn = conn;
+	}
+
+	/**
+	 * Compute which triggers are missing, stale or orphaned without changing anything.
+	 * The trigger conditions are combined from the passed mappings only, see {@link #createPlan(Collection, Map, boolean)}.
+	 *
+	 * @param mappings all mappings the triggers should exist for
+	 * @param includeorphans if true, triggers of tables not used by any of the mappings are added as DROP actions.
+	 * Hence the list of mappings must be complete, e.g. all mappings of the connection.
+	 * @return the plan, tables without any required change are included with an empty action list
+	 * @throws ConnectorRuntimeException if the dictionary cannot be read or a mapping is invalid
+	 */
+	public TriggerDeploymentPlan createPlan(Collection<OracleTableMapping> mappings, boolean includeorphans) throws ConnectorRuntimeException {
+		return createPlan(mappings, null, includeorphans);
+	}
+
+	/**
+	 * Compute which triggers are missing, stale or orphaned without changing anything.
+	 * Multiple mappings on the same table share its triggers, so the WHEN clause of the triggers is the combination of
+	 * the trigger filters of all these mappings, see {@link TriggerConditions}.
+	 *
+	 * @param mappings all mappings the triggers should exist for
+	 * @param conditions the trigger conditions of all mappings of the connection per owner.tablename, see
+	 * {@link OracleBrowse#getTriggerConditions()}, null to combine the conditions of the passed mappings only.
+	 * The conditions of the passed mappings are added to it, as they might not be saved yet.
+	 * @param includeorphans if true, triggers of tables not used by any of the mappings are added as DROP actions.
+	 * Hence the list of mappings must be complete, e.g. all mappings of the connection.
+	 * @return the plan, tables without any required change are included with an empty action list
+	 * @throws ConnectorRuntimeException if the dictionary cannot be read or a mapping is invalid
+	 */
+	public TriggerDeploymentPlan createPlan(Collection<OracleTableMapping> mappings, Map<String, TriggerConditions> conditions,
+			boolean includeorphans) throws ConnectorRuntimeException {
+		Map<String, Map<String, String[]>> existing = readExistingTriggers();
+		Map<String, TableDeployment> tables = new LinkedHashMap<>();
+		Map<String, OracleTableMapping> first = new LinkedHashMap<>();
+		Map<String, TriggerConditions> combined = new HashMap<>();
+		for (OracleTableMapping mapping : mappings) {
+			String key = mapping.getTableKey();
+			TableDeployment table = tables.get(key);
+			if (table == null) {
+				table = new TableDeployment(mapping.getOracleowner(), mapping.getOracletablename());
+				tables.put(key, table);
+				first.put(key, mapping);
+			}
+			table.getMappings().add(mapping.getName());
+			combined.computeIfAbsent(key, k -> new TriggerConditions()).add(mapping);
+		}
+		for (String key : first.keySet()) {
+			TableDeployment table = tables.get(key);
+			TriggerConditions tableconditions = conditions != null ? conditions.get(key) : null;
+			if (tableconditions == null) {
+				tableconditions = combined.get(key);
+			} else {
+				for (OracleTableMapping mapping : mappings) {
+					if (mapping.getTableKey().equals(key)) {
+						tableconditions.add(mapping);
+					}
+				}
+			}
+			Map<String, String[]> found = existing.get(key);
+			Triggers triggers = first.get(key).getTriggerDefinitions(new HashMap<>(), tableconditions);
+			for (int i = 0; i < Triggers.TRIGGER_COUNT; i++) {
+				String triggername = triggers.getTriggerName(i);
+				String[] definition = found == null ? null : found.get(triggername);
+				if (definition == null) {
+					table.getActions().add(new TriggerAction(triggername, Action.CREATE, triggers.getTriggerSQL(i)));
+				} else if (!normalize(definition[BODY]).equals(normalize(triggers.getTriggerBody(i)))
+						|| !normalizeCondition(definition[WHEN]).equals(normalizeCondition(triggers.getTriggerWhen(i)))) {
+					table.getActions().add(new TriggerAction(triggername, Action.REPLACE,
+							triggers.getTriggerSQL(i).replaceFirst("CREATE TRIGGER", "CREATE OR REPLACE TRIGGER")));
+				}
+			}
+		}
+		if (includeorphans) {
+			for (String key : existing.keySet()) {
+				if (!tables.containsKey(key)) {
+					Map<String, String[]> found = existing.get(key);
+					TableDeployment table = null;
+					for (String triggername : found.keySet()) {
+						String body = found.get(triggername)[BODY];
+						if (body != null && body.toUpperCase().contains(".PKLOG")) {
+							if (table == null) {
+								int pos = key.indexOf('.');
+								table = new TableDeployment(key.substring(0, pos), key.substring(pos+1));
+								tables.put(key, table);
+							}
+							table.getActions().add(new TriggerAction(triggername, Action.DROP, "DROP TRIGGER \"" + triggername + "\""));
+						}
+					}
+				}
+			}
+		}
+		return new TriggerDeploymentPlan(new ArrayList<>(tables.values()));
+	}
+
+	/**
+	 * Execute the plan's actions, each table by one of the parallel workers.
+	 * The outcome is written into the plan's tables, see {@link TableDeployment#getError()}.
+	 *
+	 * @param plan as created by {@link #createPlan(Collection, boolean)}
+	 * @param props to open one connection per worker
+	 * @param parallel max number of concurrent sessions executing DDL statements
+	 * @param droporphans if false, DROP actions are skipped
+	 * @return the same plan with the execution result
+	 * @throws ConnectorRuntimeException if the workers could not be started
+	 */
+	public TriggerDeploymentPlan apply(TriggerDeploymentPlan plan, OracleConnectionProperties props, int parallel, boolean droporphans) throws ConnectorRuntimeException {
+		ConcurrentLinkedQueue<TableDeployment> queue = new ConcurrentLinkedQueue<>();
+		for (TableDeployment table : plan.getTables()) {
+			if (table.getActions().size() != 0) {
+				queue.add(table);
+			}
+		}
+		if (queue.size() == 0) {
+			return plan;
+		}
+		int workercount = Math.max(1, Math.min(parallel, queue.size()));
+		ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor(); // the workers wait on the database mostly
+		try {
+			List<Callable<Void>> workers = new ArrayList<>();
+			for (int i = 0; i < workercount; i++) {
+				workers.add(() -> {
+					try (Connection workerconn = OracleConnectorFactory.getDatabaseConnection(props);) {
+						TableDeployment table;
+						while ((table = queue.poll()) != null) {
+							execute(workerconn, table, droporphans);
+						}
+					}
+					return null;
+				});
+			}
+			for (Future<Void> f : executor.invokeAll(workers)) {
+				f.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ConnectorRuntimeException("Deploying the triggers got interrupted", e, null, null);
+		} catch (ExecutionException e) {
+			throw new ConnectorRuntimeException("Deploying the triggers failed", e.getCause(),
+					"Can the database be connected with the connection's credentials?", null);
+		} finally {
+			executor.shutdownNow();
+		}
+		return plan;
+	}
+
+	private static void execute(Connection workerconn, TableDeployment table, boolean droporphans) {
+		for (TriggerAction action : table.getActions()) {
+			if (action.getAction() == Action.DROP && !droporphans) {
+				continue;
+			}
+			try (Statement stmt = workerconn.createStatement();) {
+				stmt.execute(action.getSql());
+				action.setExecuted(true);
+			} catch (SQLException e) {
+				table.setError(action.getTriggername() + ": " + e.getMessage());
+				return;
+			}
+		}
+	}
+
+	/**
+	 * @return map of owner.tablename to a map of triggername and the trigger's body and when clause
+	 */
+	private Map<String, Map<String, String[]>> readExistingTriggers() throws ConnectorRuntimeException {
+		Map<String, Map<String, String[]>> ret = new HashMap<>();
+		try (PreparedStatement stmt = conn.prepareStatement(SELECT_TRIGGERS);) {
+			try (ResultSet rs = stmt.executeQuery();) {
+				while (rs.next()) {
+					String key = rs.getString(1) + "." + rs.getString(2);
+					String triggername = rs.getString(3);
+					String[] definition = new String[2];
+					definition[WHEN] = rs.getString(4);
+					definition[BODY] = rs.getString(5); // LONG column must be read last
+					Map<String, String[]> triggers = ret.get(key);
+					if (triggers == null) {
+						triggers = new HashMap<>();
+						ret.put(key, triggers);
+					}
+					triggers.put(triggername, definition);
+				}
+			}
+		} catch (SQLException e) {
+			throw new ConnectorRuntimeException("Reading the existing Change Logging triggers failed in the database", e,
+					"Execute the sql as the connection's Oracle user", SELECT_TRIGGERS);
+		}
+		return ret;
+	}
+
+	/**
+	 * The database keeps the trigger body as written but formatting should not cause a replace.
+	 */
+	private static String normalize(String body) {
+		if (body == null) {
+			return "";
+		} else {
+			return body.replaceAll("\\s+", " ").trim().toUpperCase();
+		}
+	}
+
+	/**
+	 * The when clause is compared without the enclosing brackets.
+	 */
+	private static String normalizeCondition(String condition) {
+		String c = normalize(condition);
+		while (c.startsWith("(") && c.endsWith(")") && isEnclosed(c)) {
+			c = c.substring(1, c.length()-1).trim();
+		}
+		return c;
+	}
+
+	/**
+	 * @return true if the first bracket is closed by the last character, e.g. not for "(A) OR (B)"
+	 */
+	private static boolean isEnclosed(String c) {
+		int depth = 0;
+		for (int i = 0; i < c.length(); i++) {
+			if (c.charAt(i) == '(') {
+				depth++;
+			} else if (c.charAt(i) == ')') {
+				depth--;
+				if (depth == 0 && i != c.length()-1) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	public static class TriggerDeploymentPlan {
+		private List<TableDeployment> tables;
+
+		public TriggerDeploymentPlan() {
+			super();
+		}
+
+		public TriggerDeploymentPlan(List<TableDeployment> tables) {
+			super();
+			this.tables = tables;
+		}
+
+		public List<TableDeployment> getTables() {
+			return tables;
+		}
+
+		public void setTables(List<TableDeployment> tables) {
+			this.tables = tables;
+		}
+
+		public int getActionCount() {
+			int count = 0;
+			for (TableDeployment t : tables) {
+				count += t.getActions().size();
+			}
+			return count;
+		}
+
+		public int getErrorCount() {
+			int count = 0;
+			for (TableDeployment t : tables) {
+				if (t.getError() != null) {
+					count++;
+				}
+			}
+			return count;
+		}
+	}
+
+	public static class TableDeployment {
+		private String oracleowner;
+		private String oracletablename;
+		private List<String> mappings = new ArrayList<>();
+		private List<TriggerAction> actions = new ArrayList<>();
+		private String error;
+
+		public TableDeployment() {
+			super();
+		}
+
+		public TableDeployment(String oracleowner, String oracletablename) {
+			super();
+			this.oracleowner = oracleowner;
+			this.oracletablename = oracletablename;
+		}
+
+		public String getOracleowner() {
+			return oracleowner;
+		}
+
+		public void setOracleowner(String oracleowner) {
+			this.oracleowner = oracleowner;
+		}
+
+		public String getOracletablename() {
+			return oracletablename;
+		}
+
+		public void setOracletablename(String oracletablename) {
+			this.oracletablename = oracletablename;
+		}
+
+		public List<String> getMappings() {
+			return mappings;
+		}
+
+		public void setMappings(List<String> mappings) {
+			this.mappings = mappings;
+		}
+
+		public List<TriggerAction> getActions() {
+			return actions;
+		}
+
+		public void setActions(List<TriggerAction> actions) {
+			this.actions = actions;
+		}
+
+		public String getError() {
+			return error;
+		}
+
+		public void setError(String error) {
+			this.error = error;
+		}
+
+		@Override
+		public String toString() {
+			return oracleowner + "." + oracletablename;
+		}
+	}
+
+	public static class TriggerAction {
+		private String triggername;
+		private Action action;
+		private String sql;
+		private boolean executed = false;
+
+		public TriggerAction() {
+			super();
+		}
+
+		public TriggerAction(String triggername, Action action, String sql) {
+			super();
+			this.triggername = triggername;
+			this.action = action;
+			this.sql = sql;
+		}
+
+		public String getTriggername() {
+			return triggername;
+		}
+
+		public void setTriggername(String triggername) {
+			this.triggername = triggername;
+		}
+
+		public Action getAction() {
+			return action;
+		}
+
+		public void setAction(Action action) {
+			this.action = action;
+		}
+
+		public String getSql() {
+			return sql;
+		}
+
+		public void setSql(String sql) {
+			this.sql = sql;
+		}
+
+		public boolean isExecuted() {
+			return executed;
+		}
+
+		public void setExecuted(boolean executed) {
+			this.executed = executed;
+		}
+	}
+}
@@ -0,0 +1,110 @@
+package io.rtdi.bigdata.oracleconnector.rest;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import jakarta.annotation.security.RolesAllowed;
+import jakarta.servlet.ServletContext;
+import jakarta.ws.rs.DefaultValue;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.PathParam;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.Configuration;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+
+import io.rtdi.bigdata.connector.connectorframework.WebAppController;
+import io.rtdi.bigdata.connector.connectorframework.controller.ConnectionController;
+import io.rtdi.bigdata.connector.connectorframework.controller.ConnectorController;
+import io.rtdi.bigdata.connector.connectorframework.controller.ProducerController;
+import io.rtdi.bigdata.connector.connectorframework.rest.JAXBErrorResponseBuilder;
+import io.rtdi.bigdata.connector.connectorframework.servlet.ServletSecurityConstants;
+import io.rtdi.bigdata.oracleconnector.OracleBrowse;
+import io.rtdi.bigdata.oracleconnector.OracleConnectionProperties;
+import io.rtdi.bigdata.oracleconnector.OracleProducerProperties;
+import io.rtdi.bigdata.oracleconnector.OracleTableMapping;
+import io.rtdi.bigdata.oracleconnector.PKLogAnalyzer;
+import io.rtdi.bigdata.oracleconnector.PKLogAnalyzer.ProducerStatistics;
+import io.rtdi.bigdata.oracleconnector.SharedChangeReader;
+
+@Path("/")
+public class PKLogAnalyzerService {
+	/**
+	 * A dashboard refreshing every minute from multiple browsers should not scan the PKLOG each time
+	 */
+	private static final long CACHE_MILLIS = 30000L;
+	private static final Map<String, CachedResult> cache = new HashMap<>();
+
+	@Context
+    private Configuration configuration;
+
+	@Context
+	private ServletContext servletContext;
+
+	public PKLogAnalyzerService() {
+	}
+
+	/**
+	 * The unprocessed PKLOG rows per producer and mapping with the hot keys and the delta select's runtime statistics.
+	 */
+	@GET
+	@Path("/connections/{connectionname}/pklogstatistics")
+    @Produces(MediaType.APPLICATION_JSON)
+	@RolesAllowed({ServletSecurityConstants.ROLE_VIEW})
+    public Response getStatistics(
+    		@PathParam("connectionname") String connectionname,
+    		@QueryParam("producer") String producername,
+    		@QueryParam("topkeys") @DefaultValue("10") int topkeys) {
+		try {
+			String key = connectionname + "/" + producername + "/" + topkeys;
+			synchronized (cache) {
+				CachedResult c = cache.get(key);
+				if (c != null && System.currentTimeMillis() - c.time < CACHE_MILLIS) {
+					return Response.ok(c.result).build();
+				}
+			}
+			ConnectorController connector = WebAppController.getConnectorOrFail(servletContext);
+			ConnectionController connection = connector.getConnectionOrFail(connectionname);
+			OracleConnectionProperties props = (OracleConnectionProperties) connection.getConnectionProperties();
+			OracleBrowse browser = (OracleBrowse) connection.getBrowser();
+			PKLogAnalyzer analyzer = new PKLogAnalyzer(browser.getConnection());
+			List<ProducerStatistics> ret = new ArrayList<>();
+			if (connection.getProducers() != null) {
+				for (ProducerController producer : connection.getProducers().values()) {
+					if (producername == null || producername.equals(producer.getName())) {
+						OracleProducerProperties producerprops = (OracleProducerProperties) producer.getProducerProperties();
+						List<OracleTableMapping> mappings = new ArrayList<>();
+						List<String> sources = producerprops.getSourceSchemas();
+						if (sources != null) {
+							for (String mappingname : sources) {
+								mappings.add(browser.getBusinessObject(mappingname));
+							}
+						}
+						Long watermark = SharedChangeReader.getWatermark(props, producer.getName());
+						ret.add(analyzer.analyze(producer.getName(), watermark, mappings, topkeys));
+					}
+				}
+			}
+			synchronized (cache) {
+				cache.put(key, new CachedResult(ret));
+			}
+			return Response.ok(ret).build();
+		} catch (Exception e) {
+			return JAXBErrorResponseBuilder.getJAXBResponse(e);
+		}
+	}
+
+	private static class CachedResult {
+		private final long time = System.currentTimeMillis();
+		private final List<ProducerStatistics> result;
+
+		private CachedResult(List<ProducerStatistics> result) {
+			this.result = result;
+		}
+	}
+}
@@ -4,11 +4,13 @@ import java.util.List;
 
 import jakarta.annotation.security.RolesAllowed;
 import jakarta.servlet.ServletContext;
+import jakarta.ws.rs.DefaultValue;
 import jakarta.ws.rs.GET;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
 import jakarta.ws.rs.core.Configuration;
 import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
@@ -40,12 +42,28 @@ public class SourceTableService {
 	@Path("/connections/{connectionname}/sourcetables")
     @Produces(MediaType.APPLICATION_JSON)
 	@RolesAllowed({ServletSecurityConstants.ROLE_VIEW})
-    public Response getFiles(@PathParam("connectionname") String connectionname, @PathParam("name") String name) {
+    public Response getFiles(
+    		@PathParam("connectionname") String connectionname,
+    		@PathParam("name") String name,
+    		@QueryParam("owner") String owner,
+    		@QueryParam("table") String table,
+    		@QueryParam("sort") String sort,
+    		@QueryParam("desc") @DefaultValue("false") boolean descending,
+    		@QueryParam("offset") Integer offset,
+    		@QueryParam("limit") Integer limit) {
 		try {
 			ConnectorController connector = WebAppController.getConnectorOrFail(servletContext);
 			ConnectionController connection = connector.getConnectionOrFail(connectionname);
 			OracleBrowse browser = (OracleBrowse) connection.getBrowser();
-			return Response.ok(browser.getOracleTables()).build();
+			if (offset == null && limit == null && owner == null && table == null && sort == null) {
+				/*
+				 * Without any paging or filter parameters the complete list is returned as before
+				 */
+				return Response.ok(browser.getOracleTables()).build();
+			} else {
+				return Response.ok(browser.getOracleTables(owner, table, sort, descending,
+						offset == null ? 0 : offset, limit == null ? 0 : limit)).build();
+			}
 		} catch (Exception e) {
 			return JAXBErrorResponseBuilder.getJAXBResponse(e);
 		}
@@ -64,7 +82,7 @@ public class SourceTableService {
 			OracleBrowse browser = (OracleBrowse) connection.getBrowser();
 			for (TableImport t : data) {
 				OracleTableMapping entity = new OracleTableMapping(t.getMappingname(), dbuser, t.getOracleowner(), t.getOracletablename(), browser.getConnection());
-				entity.write(browser.getBusinessObjectDirectory());
+				browser.writeBusinessObject(entity);
 			}
 			return JAXBSuccessResponseBuilder.getJAXBResponse("Saved " + data.size() + " table schemas");
 		} catch (Exception e) {
@@ -100,7 +118,7 @@ public class SourceTableService {
 			ConnectorController connector = WebAppController.getConnectorOrFail(servletContext);
 			ConnectionController connection = connector.getConnectionOrFail(connectionname);
 			OracleBrowse browser = (OracleBrowse) connection.getBrowser();
-			data.write(browser.getBusinessObjectDirectory());
+			browser.writeBusinessObject(data);
 			return JAXBSuccessResponseBuilder.getJAXBResponse("Saved");
 		} catch (Exception e) {
 			return JAXBErrorResponseBuilder.getJAXBResponse(e);
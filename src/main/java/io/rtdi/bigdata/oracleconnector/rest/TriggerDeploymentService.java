@@ -0,0 +1,109 @@
+package io.rtdi.bigdata.oracleconnector.rest;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import jakarta.annotation.security.RolesAllowed;
+import jakarta.servlet.ServletContext;
+import jakarta.ws.rs.DefaultValue;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.POST;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.PathParam;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.Configuration;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+
+import io.rtdi.bigdata.connector.connectorframework.WebAppController;
+import io.rtdi.bigdata.connector.connectorframework.controller.ConnectionController;
+import io.rtdi.bigdata.connector.connectorframework.controller.ConnectorController;
+import io.rtdi.bigdata.connector.connectorframework.entity.TableEntry;
+import io.rtdi.bigdata.connector.connectorframework.rest.JAXBErrorResponseBuilder;
+import io.rtdi.bigdata.connector.connectorframework.servlet.ServletSecurityConstants;
+import io.rtdi.bigdata.oracleconnector.OracleBrowse;
+import io.rtdi.bigdata.oracleconnector.OracleConnectionProperties;
+import io.rtdi.bigdata.oracleconnector.OracleTableMapping;
+import io.rtdi.bigdata.oracleconnector.TriggerDeploymentPlanner;
+import io.rtdi.bigdata.oracleconnector.TriggerDeploymentPlanner.TriggerDeploymentPlan;
+
+@Path("/")
+public class TriggerDeploymentService {
+	@Context
+    private Configuration configuration;
+
+	@Context
+	private ServletContext servletContext;
+
+	public TriggerDeploymentService() {
+	}
+
+	/**
+	 * Dry-run: return the trigger changes needed without executing them.
+	 * Orphaned triggers are part of the plan only if no mapping filter is used.
+	 */
+	@GET
+	@Path("/connections/{connectionname}/triggerplan")
+    @Produces(MediaType.APPLICATION_JSON)
+	@RolesAllowed({ServletSecurityConstants.ROLE_VIEW})
+    public Response getPlan(@PathParam("connectionname") String connectionname, @QueryParam("mapping") String mapping) {
+		try {
+			ConnectorController connector = WebAppController.getConnectorOrFail(servletContext);
+			ConnectionController connection = connector.getConnectionOrFail(connectionname);
+			OracleBrowse browser = (OracleBrowse) connection.getBrowser();
+			TriggerDeploymentPlanner planner = new TriggerDeploymentPlanner(browser.getConnection());
+			TriggerDeploymentPlan plan = planner.createPlan(getMappings(browser, mapping), browser.getTriggerConditions(), mapping == null);
+			return Response.ok(plan).build();
+		} catch (Exception e) {
+			return JAXBErrorResponseBuilder.getJAXBResponse(e);
+		}
+	}
+
+	/**
+	 * Compute the plan and execute it, the response contains the per table result.
+	 */
+	@POST
+	@Path("/connections/{connectionname}/triggerplan")
+    @Produces(MediaType.APPLICATION_JSON)
+	@RolesAllowed({ServletSecurityConstants.ROLE_CONFIG})
+    public Response applyPlan(
+    		@PathParam("connectionname") String connectionname,
+    		@QueryParam("mapping") String mapping,
+    		@QueryParam("droporphans") @DefaultValue("false") boolean droporphans) {
+		try {
+			ConnectorController connector = WebAppController.getConnectorOrFail(servletContext);
+			ConnectionController connection = connector.getConnectionOrFail(connectionname);
+			OracleConnectionProperties props = (OracleConnectionProperties) connection.getConnectionProperties();
+			OracleBrowse browser = (OracleBrowse) connection.getBrowser();
+			TriggerDeploymentPlanner planner = new TriggerDeploymentPlanner(browser.getConnection());
+			TriggerDeploymentPlan plan = planner.createPlan(getMappings(browser, mapping), browser.getTriggerConditions(), mapping == null);
+			planner.apply(plan, props, props.getDDLParallelism(), droporphans && mapping == null);
+			return Response.ok(plan).build();
+		} catch (Exception e) {
+			return JAXBErrorResponseBuilder.getJAXBResponse(e);
+		}
+	}
+
+	private static List<OracleTableMapping> getMappings(OracleBrowse browser, String mappingfilter) throws IOException {
+		List<OracleTableMapping> ret = new ArrayList<>();
+		if (mappingfilter != null) {
+			for (String name : mappingfilter.split(",")) {
+				if (name.trim().length() != 0) {
+					ret.addAll(browser.getBusinessObject(name.trim()).getAllTableMappings());
+				}
+			}
+		} else {
+			List<TableEntry> tables = browser.getRemoteSchemaNames();
+			if (tables != null) {
+				for (TableEntry table : tables) {
+					ret.addAll(browser.getBusinessObject(table.getTablename()).getAllTableMappings());
+				}
+			}
+		}
+		return ret;
+	}
+
+}
@@ -3,6 +3,11 @@ package io.rtdi.bigdata.oracleconnector.servlet;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
@@ -14,9 +19,11 @@ import io.rtdi.bigdata.connector.connectorframework.controller.ConnectionControl
 import io.rtdi.bigdata.connector.connectorframework.controller.ConnectorController;
 import io.rtdi.bigdata.connector.connectorframework.entity.TableEntry;
 import io.rtdi.bigdata.connector.connectorframework.servlet.UI5ServletAbstract;
+import io.rtdi.bigdata.connector.pipeline.foundation.utils.FileNameEncoder;
 import io.rtdi.bigdata.oracleconnector.OracleBrowse;
 import io.rtdi.bigdata.oracleconnector.OracleProducer;
 import io.rtdi.bigdata.oracleconnector.OracleTableMapping;
+import io.rtdi.bigdata.oracleconnector.OracleTableMapping.TriggerConditions;
 import io.rtdi.bigdata.oracleconnector.OracleTableMapping.Triggers;
 
 @WebServlet("/ui5/TriggerScript")
@@ -27,29 +34,48 @@ public class TriggerScript extends UI5ServletAbstract {
         super("TriggerScript", "TriggerScript");
     }
 
+	/**
+	 * Streams the trigger script of all mappings to the client.<br>
+	 * Optional request parameters:
+	 * <ul><li>owner: only tables of this Oracle owner</li>
+	 * <li>mapping: only the listed mappings, comma separated</li>
+	 * <li>download=true: return the plain sql script as file attachment instead of a html page</li></ul>
+	 */
 	protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+		String connectionname = request.getParameter("connectionname");
+		String owner = emptyToNull(request.getParameter("owner"));
+		String mappingfilter = emptyToNull(request.getParameter("mapping"));
+		boolean download = "true".equalsIgnoreCase(request.getParameter("download"));
+		ConnectorController connector = WebAppController.getConnectorOrFail(request.getServletContext());
+		ConnectionController connection = connector.getConnectionOrFail(connectionname);
+		OracleBrowse browser = (OracleBrowse) connection.getBrowser();
+
 		long expiry = System.currentTimeMillis() + BROWSER_CACHING_IN_SECS*1000;
 		response.setDateHeader("Expires", expiry);
 		response.setHeader("Cache-Control", "max-age="+ BROWSER_CACHING_IN_SECS);
+		if (download) {
+			response.setContentType("application/sql");
+			response.setCharacterEncoding("UTF-8");
+			response.setHeader("Content-Disposition", "attachment; filename=\"" + FileNameEncoder.encodeName(connectionname) + "_triggers.sql\"");
+		} else {
+			response.setContentType("text/html");
+		}
 		PrintWriter out = response.getWriter();
-		out.println("<!DOCTYPE html>");
-		out.println("<html style=\"height: 100%;\">");
-		out.println("<head>");
-		out.println("<meta charset=\"ISO-8859-1\">");
-		out.print("<title>");
-		out.print(getTitle());
-		out.println("</title>");
-		out.println("</head>");
-		out.println("<body><pre>");
+		if (!download) {
+			out.println("<!DOCTYPE html>");
+			out.println("<html style=\"height: 100%;\">");
+			out.println("<head>");
+			out.println("<meta charset=\"ISO-8859-1\">");
+			out.print("<title>");
+			out.print(getTitle());
+			out.println("</title>");
+			out.println("</head>");
+			out.println("<body><pre>");
+		}
 
-		String connectionname = request.getParameter("connectionname");
-		ConnectorController connector = WebAppController.getConnectorOrFail(request.getServletContext());
-		ConnectionController connection = connector.getConnectionOrFail(connectionname);
-		OracleBrowse browser = (OracleBrowse) connection.getBrowser();
-		
 		try {
 			browser.open();
-			out.print("/* The PKLOG table must exist in schema: ");
+			out.print("/* The PKLOG and PKLOG_WATERMARK tables must exist in schema: ");
 			try {
 				out.print(browser.getConnection().getSchema());
 			} catch (SQLException e) {
@@ -57,19 +83,75 @@ public class TriggerScript extends UI5ServletAbstract {
 			out.println();
 			out.print(OracleProducer.getPKLOGTable());
 			out.println(";");
+			out.println();
+			out.print(OracleProducer.getPKLOGWatermarkTable());
+			out.println(";");
 			out.println("*/");
 			out.println();
-			for (TableEntry table : browser.getRemoteSchemaNames()) {
-				OracleTableMapping o = browser.getBusinessObject(table.getTablename());
-				Triggers t = o.getTriggerDefinitions();
-				out.print(t.getSQLScript());
+			/*
+			 * One query for all existing triggers, then each mapping is read, written and forgotten so the
+			 * memory does not grow with the number of mappings.
+			 */
+			Map<String, Set<String>> existingtriggers = OracleTableMapping.getExistingTriggers(browser.getConnection(), owner);
+			Map<String, TriggerConditions> conditions = browser.getTriggerConditions(); // the WHEN clause depends on all mappings of a table
+			List<String> mappingnames = getMappingNames(browser, mappingfilter);
+			int count = 0;
+			Set<String> written = new HashSet<>(); // tables used by multiple mappings get their triggers once
+			for (String mappingname : mappingnames) {
+				OracleTableMapping o = browser.getBusinessObject(mappingname);
+				for (OracleTableMapping table : o.getAllTableMappings()) { // master-detail mappings need the child table triggers as well
+					if ((owner == null || owner.equals(table.getOracleowner()))
+							&& written.add(table.getTableKey())) {
+						Triggers t = table.getTriggerDefinitions(existingtriggers, conditions.get(table.getTableKey()));
+						String script = t.getSQLScript();
+						out.print(download ? script : escapeHtml(script));
+						count++;
+						if (count % 100 == 0) {
+							out.flush();
+						}
+					}
+				}
 			}
 		} finally {
 			browser.close();
 		}
 
-		out.println("</pre></body>");
-		out.println("</html>");
+		if (!download) {
+			out.println("</pre></body>");
+			out.println("</html>");
+		}
+		out.flush();
+	}
+
+	private static List<String> getMappingNames(OracleBrowse browser, String mappingfilter) throws IOException {
+		List<String> ret = new ArrayList<>();
+		if (mappingfilter != null) {
+			for (String name : mappingfilter.split(",")) {
+				if (name.trim().length() != 0) {
+					ret.add(name.trim());
+				}
+			}
+		} else {
+			List<TableEntry> tables = browser.getRemoteSchemaNames();
+			if (tables != null) {
+				for (TableEntry table : tables) {
+					ret.add(table.getTablename());
+				}
+			}
+		}
+		return ret;
+	}
+
+	private static String emptyToNull(String value) {
+		if (value == null || value.trim().length() == 0) {
+			return null;
+		} else {
+			return value.trim();
+		}
+	}
+
+	private static String escapeHtml(String text) {
+		return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
 	}
 
 }
@@ -0,0 +1,330 @@
+package io.rtdi.bigdata.oracleconnector;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.rowset.serial.SerialClob;
+
+import io.rtdi.bigdata.kafka.avro.RowType;
+import io.rtdi.bigdata.kafka.avro.SchemaConstants;
+import io.rtdi.bigdata.oracleconnector.OracleTableMapping.ColumnMapping;
+
+/**
+ * Measures the capture path of the producer from the JDBC result set to the sink without an Oracle database.<br>
+ * A synthetic result set stands in for the delta select and emulates the fetch round trips, the sink emulates the
+ * pipeline's batch acknowledgements. In between the code of the producer is used: the {@link RowConverter},
+ * the {@link RowPipeline}, the {@link PartitionRouter} and the {@link RowHashCache}.<br>
+ * Each scenario is executed serially and pipelined and reports rows/s, the latency from fetching a row until it is
+ * handed to the sink and the allocated bytes per row.<br>
+ * This is not a unit test, execute the main method, e.g. from the IDE.
+ */
+public class CaptureBenchmark {
+	private static final int WARMUP_RUNS = 2;
+
+	public static void main(String[] args) throws Exception {
+		List<Scenario> scenarios = new ArrayList<>();
+		scenarios.add(new Scenario("narrow", 200000, 5, 20, 0, 0, 100, 1000, false));
+		scenarios.add(new Scenario("wide", 50000, 200, 30, 0, 0, 100, 1000, false));
+		scenarios.add(new Scenario("hotkeys", 200000, 5, 20, 0, 100, 100, 1000, false));
+		scenarios.add(new Scenario("lob", 20000, 5, 20, 16000, 0, 100, 1000, false));
+		scenarios.add(new Scenario("bursty", 200000, 5, 20, 0, 0, 100, 1000, true));
+		System.out.println(String.format("%-10s %-10s %12s %10s %10s %10s %12s",
+				"scenario", "mode", "rows/s", "p50 us", "p99 us", "p99.9 us", "bytes/row"));
+		for (Scenario s : scenarios) {
+			for (boolean pipelined : new boolean[] {false, true}) {
+				for (int i = 0; i < WARMUP_RUNS; i++) {
+					run(s, pipelined);
+				}
+				Result r = run(s, pipelined);
+				System.out.println(String.format("%-10s %-10s %12.0f %10d %10d %10d %12d",
+						s.name, pipelined ? "pipelined" : "serial", r.rowspersecond, r.p50, r.p99, r.p999, r.bytesperrow));
+			}
+		}
+	}
+
+	private static Result run(Scenario s, boolean pipelined) throws Exception {
+		OracleTableMapping mapping = s.createMapping();
+		OracleProducerProperties props = new OracleProducerProperties("benchmark");
+		SyntheticResultSet data = new SyntheticResultSet(s, mapping);
+		ResultSet rs = data.getResultSet();
+		RowConverter converter = new RowConverter(rs.getMetaData(), mapping, props);
+		PartitionRouter router = new PartitionRouter(mapping);
+		RowHashCache cache = s.hotkeys > 0 ? new RowHashCache(mapping, s.hotkeys) : null;
+		long[] fetchtime = new long[s.rows];
+		long[] latency = new long[s.rows];
+		Sink sink = new Sink(s.sendbatch);
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long allocated = threads.getTotalThreadAllocatedBytes();
+		long start = System.nanoTime();
+		RowPipeline.execute(rs,
+				(row) -> {
+					fetchtime[data.getRow()] = System.nanoTime();
+					return new RowPipeline.Row(converter.convert(row), RowType.UPSERT, null);
+				},
+				(r, rowtype, rowid) -> {
+					latency[sink.count] = System.nanoTime() - fetchtime[sink.count];
+					if (cache == null || cache.put(r)) {
+						sink.add(router.getPartition(r, 8));
+					} else {
+						sink.suppressed();
+					}
+				},
+				pipelined);
+		long elapsed = System.nanoTime() - start;
+		allocated = threads.getTotalThreadAllocatedBytes() - allocated;
+		Arrays.sort(latency);
+		Result result = new Result();
+		result.rowspersecond = s.rows * 1e9 / elapsed;
+		result.p50 = TimeUnit.NANOSECONDS.toMicros(latency[(int) (s.rows * 0.5)]);
+		result.p99 = TimeUnit.NANOSECONDS.toMicros(latency[(int) (s.rows * 0.99)]);
+		result.p999 = TimeUnit.NANOSECONDS.toMicros(latency[(int) (s.rows * 0.999)]);
+		result.bytesperrow = allocated / s.rows;
+		return result;
+	}
+
+	private static void pause(long micros) {
+		if (micros > 0) {
+			try {
+				TimeUnit.MICROSECONDS.sleep(micros);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * The workload of one benchmark run
+	 */
+	private static class Scenario {
+		private final String name;
+		private final int rows;
+		private final int columns;
+		private final int columnwidth;
+		private final int lobsize;
+		private final int hotkeys;
+		private final int fetchsize;
+		private final int sendbatch;
+		private final boolean bursty;
+
+		/**
+		 * @param name of the scenario
+		 * @param rows number of rows the delta select returns
+		 * @param columns number of VARCHAR2 columns besides the primary key
+		 * @param columnwidth characters per VARCHAR2 value
+		 * @param lobsize characters of a CLOB column, 0 for no LOB column
+		 * @param hotkeys if not 0 the rows are changes of this many keys with one changed column each and the unchanged
+		 *        row images are suppressed
+		 * @param fetchsize rows per emulated fetch round trip
+		 * @param sendbatch rows per emulated acknowledgement of the pipeline
+		 * @param bursty every 10th round trip takes 20 times longer, like a burst of commits competing for the database
+		 */
+		private Scenario(String name, int rows, int columns, int columnwidth, int lobsize, int hotkeys, int fetchsize, int sendbatch, boolean bursty) {
+			this.name = name;
+			this.rows = rows;
+			this.columns = columns;
+			this.columnwidth = columnwidth;
+			this.lobsize = lobsize;
+			this.hotkeys = hotkeys;
+			this.fetchsize = fetchsize;
+			this.sendbatch = sendbatch;
+			this.bursty = bursty;
+		}
+
+		private OracleTableMapping createMapping() {
+			OracleTableMapping mapping = new OracleTableMapping();
+			mapping.setName("BENCH_" + name.toUpperCase());
+			mapping.setOracleowner("BENCH");
+			mapping.setOracletablename(name.toUpperCase());
+			ColumnMapping pk = mapping.addMapping("ID", "\"ID\"", "NUMBER(19, 0)");
+			mapping.addPK(1, pk);
+			for (int i = 1; i <= columns; i++) {
+				mapping.addMapping("C" + i, "\"C" + i + "\"", "VARCHAR2(" + columnwidth + ")");
+			}
+			if (lobsize > 0) {
+				mapping.addMapping("DOC", "\"DOC\"", "CLOB");
+			}
+			mapping.setIntegralnumbers(true);
+			return mapping;
+		}
+	}
+
+	/**
+	 * A result set with the columns of a delta select, _CHANGE_TYPE, _SCN, the rowid and the mapping's columns,
+	 * and a fetch delay every fetchsize rows.
+	 */
+	private static class SyntheticResultSet implements InvocationHandler {
+		private final Scenario s;
+		private final String[] labels;
+		private final int[] types;
+		private final String[] values;
+		private final Random random = new Random(42);
+		private int row = -1;
+		private int roundtrips = 0;
+		private String lob;
+
+		private SyntheticResultSet(Scenario s, OracleTableMapping mapping) {
+			this.s = s;
+			List<ColumnMapping> columns = mapping.getColumnmappings();
+			labels = new String[columns.size() + 3];
+			types = new int[labels.length];
+			labels[0] = "_CHANGE_TYPE";
+			types[0] = Types.VARCHAR;
+			labels[1] = "_SCN";
+			types[1] = Types.NUMERIC;
+			labels[2] = SchemaConstants.SCHEMA_COLUMN_SOURCE_ROWID;
+			types[2] = Types.ROWID;
+			for (int i = 0; i < columns.size(); i++) {
+				String datatype = columns.get(i).getOracledatatype();
+				labels[i + 3] = columns.get(i).getAlias();
+				types[i + 3] = datatype.startsWith("NUMBER") ? Types.NUMERIC : datatype.equals("CLOB") ? Types.CLOB : Types.VARCHAR;
+			}
+			values = new String[labels.length];
+			if (s.lobsize > 0) {
+				char[] c = new char[s.lobsize];
+				Arrays.fill(c, 'x');
+				lob = new String(c);
+			}
+		}
+
+		private ResultSet getResultSet() {
+			return (ResultSet) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {ResultSet.class}, this);
+		}
+
+		private int getRow() {
+			return row;
+		}
+
+		private boolean next() {
+			row++;
+			if (row >= s.rows) {
+				return false;
+			}
+			if (row % s.fetchsize == 0) {
+				roundtrips++;
+				pause(s.bursty && roundtrips % 10 == 0 ? 4000 : 200);
+			}
+			long key = s.hotkeys > 0 ? random.nextInt(s.hotkeys) : row;
+			values[1] = String.valueOf(1000000L + row);
+			values[2] = "AAAR3sAAEAAAACXAA" + (key % 10);
+			values[3] = String.valueOf(key);
+			for (int i = 4; i < values.length; i++) {
+				if (types[i] == Types.VARCHAR) {
+					if (s.hotkeys > 0 && i != 4) {
+						values[i] = "constant"; // hot key changes modify the first column only, if at all
+					} else {
+						values[i] = randomString(s.hotkeys > 0 ? 1 : s.columnwidth);
+					}
+				}
+			}
+			return true;
+		}
+
+		private String randomString(int length) {
+			char[] c = new char[length];
+			for (int i = 0; i < length; i++) {
+				c[i] = (char) ('a' + random.nextInt(4));
+			}
+			return new String(c);
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+			case "next":
+				return next();
+			case "getMetaData":
+				return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {ResultSetMetaData.class}, this::invokeMetadata);
+			case "getString":
+				return ((Integer) args[0]) == 1 ? "A" : values[(Integer) args[0] - 1];
+			case "getLong":
+				return Long.valueOf(values[(Integer) args[0] - 1]);
+			case "getInt":
+				return Integer.valueOf(values[(Integer) args[0] - 1]);
+			case "getBigDecimal":
+				return new BigDecimal(values[(Integer) args[0] - 1]);
+			case "getObject":
+				return types[(Integer) args[0] - 1] == Types.NUMERIC ? new BigDecimal(values[(Integer) args[0] - 1]) : values[(Integer) args[0] - 1];
+			case "getClob":
+				return new SerialClob(lob.toCharArray());
+			case "wasNull":
+				return false;
+			case "close":
+				return null;
+			case "isClosed":
+				return row >= s.rows;
+			default:
+				throw new SQLFeatureNotSupportedException("The synthetic result set does not support " + method.getName());
+			}
+		}
+
+		private Object invokeMetadata(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+			case "getColumnCount":
+				return labels.length;
+			case "getColumnLabel":
+			case "getColumnName":
+				return labels[(Integer) args[0] - 1];
+			case "getColumnType":
+				return types[(Integer) args[0] - 1];
+			case "getColumnTypeName":
+				switch (types[(Integer) args[0] - 1]) {
+				case Types.NUMERIC: return "NUMBER";
+				case Types.CLOB: return "CLOB";
+				case Types.ROWID: return "ROWID";
+				default: return "VARCHAR2";
+				}
+			default:
+				throw new SQLException("The synthetic metadata does not support " + method.getName());
+			}
+		}
+	}
+
+	/**
+	 * Counts the records per partition and waits for an emulated acknowledgement every sendbatch records
+	 */
+	private static class Sink {
+		private final int sendbatch;
+		private final long[] partitions = new long[8];
+		private int count = 0;
+		private int unacknowledged = 0;
+
+		private Sink(int sendbatch) {
+			this.sendbatch = sendbatch;
+		}
+
+		private void add(Integer partition) {
+			partitions[partition == null ? 0 : partition]++;
+			count++;
+			unacknowledged++;
+			if (unacknowledged == sendbatch) {
+				pause(2000);
+				unacknowledged = 0;
+			}
+		}
+
+		private void suppressed() {
+			count++;
+		}
+	}
+
+	private static class Result {
+		private double rowspersecond;
+		private long p50;
+		private long p99;
+		private long p999;
+		private long bytesperrow;
+	}
+}
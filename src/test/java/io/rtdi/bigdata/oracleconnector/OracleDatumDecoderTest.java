@@ -0,0 +1,50 @@
+package io.rtdi.bigdata.oracleconnector;
+
+import static org.junit.Assert.*;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+import org.junit.Test;
+
+public class OracleDatumDecoderTest {
+
+	private static byte[] toOracleTimestamp(LocalDateTime t) {
+		int nanos = t.getNano();
+		return new byte[] {
+				(byte) (t.getYear() / 100 + 100),
+				(byte) (t.getYear() % 100 + 100),
+				(byte) t.getMonthValue(),
+				(byte) t.getDayOfMonth(),
+				(byte) (t.getHour() + 1),
+				(byte) (t.getMinute() + 1),
+				(byte) (t.getSecond() + 1),
+				(byte) (nanos >>> 24),
+				(byte) (nanos >>> 16),
+				(byte) (nanos >>> 8),
+				(byte) nanos };
+	}
+
+	@Test
+	public void testTimestamp() {
+		LocalDateTime[] values = {
+				LocalDateTime.of(1970, 1, 1, 0, 0, 0),
+				LocalDateTime.of(2024, 2, 29, 13, 45, 7, 123456000),
+				LocalDateTime.of(1899, 12, 31, 23, 59, 59, 999999000),
+				LocalDateTime.of(2100, 3, 1, 0, 0, 1) };
+		for (LocalDateTime t : values) {
+			byte[] datum = toOracleTimestamp(t);
+			assertEquals(t.toString(), t.toLocalDate().toEpochDay(), OracleDatumDecoder.toEpochDays(datum));
+			assertEquals(t.toString(), t.toEpochSecond(ZoneOffset.UTC) * 1000000L + t.getNano() / 1000, OracleDatumDecoder.toEpochMicros(datum));
+		}
+	}
+
+	@Test
+	public void testDate() {
+		LocalDateTime t = LocalDateTime.of(2021, 7, 14, 8, 30, 0);
+		byte[] datum = new byte[7];
+		System.arraycopy(toOracleTimestamp(t), 0, datum, 0, 7);
+		assertEquals(t.toEpochSecond(ZoneOffset.UTC) * 1000000L, OracleDatumDecoder.toEpochMicros(datum));
+	}
+
+}
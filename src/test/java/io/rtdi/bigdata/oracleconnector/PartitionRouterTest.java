@@ -0,0 +1,66 @@
+package io.rtdi.bigdata.oracleconnector;
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.avro.LogicalTypes;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.junit.Test;
+
+import io.rtdi.bigdata.connector.pipeline.foundation.avro.JexlGenericData.JexlRecord;
+import io.rtdi.bigdata.oracleconnector.KeyCanonicalizer.Kind;
+
+public class PartitionRouterTest {
+	private static final int PARTITIONS = 16;
+
+	private static Schema createSchema() {
+		Schema decimal = LogicalTypes.decimal(10, 2).addToSchema(Schema.create(Schema.Type.BYTES));
+		return SchemaBuilder.record("ORDERS").fields().name("ID").type(decimal).noDefault().endRecord();
+	}
+
+	private static JexlRecord createRecord(Schema schema, Object key) {
+		JexlRecord r = new JexlRecord(schema);
+		r.put(0, key);
+		return r;
+	}
+
+	@Test
+	public void testDecimalAndTextKey() {
+		Schema schema = createSchema();
+		PartitionRouter router = new PartitionRouter(new KeyCanonicalizer(new int[] {0}, new Kind[] {Kind.NUMBER}, new int[] {2}));
+		// the delta reads the key from the PKLOG as text, the initial load reads the decimal
+		String[] pklog = {"12.5", ".5", "-.25", "100", "99999999.99"};
+		for (String text : pklog) {
+			BigDecimal value = new BigDecimal(text).setScale(2);
+			Integer expected = router.getPartition(createRecord(schema, text), PARTITIONS);
+			assertEquals(text, expected, router.getPartition(createRecord(schema, ByteBuffer.wrap(value.unscaledValue().toByteArray())), PARTITIONS));
+			assertEquals(text, expected, router.getPartition(createRecord(schema, value), PARTITIONS));
+		}
+	}
+
+	@Test
+	public void testDecimalKeysOfSameLengthAreDistributed() {
+		Schema schema = createSchema();
+		PartitionRouter router = new PartitionRouter(new KeyCanonicalizer(new int[] {0}, new Kind[] {Kind.NUMBER}, new int[] {2}));
+		Set<Integer> used = new HashSet<>();
+		for (int i = 1; i <= 100; i++) {
+			BigDecimal value = BigDecimal.valueOf(i).setScale(2);
+			used.add(router.getPartition(createRecord(schema, ByteBuffer.wrap(value.unscaledValue().toByteArray())), PARTITIONS));
+		}
+		assertTrue("Keys are routed to " + used.size() + " partitions only", used.size() > PARTITIONS / 2);
+	}
+
+	@Test
+	public void testCanonicalTemporal() {
+		assertEquals(KeyCanonicalizer.canonical(19782, Kind.DATE, 0), KeyCanonicalizer.canonical("2024-02-29", Kind.DATE, 0));
+		long micros = 1709214307123456L; // 2024-02-29 13:45:07.123456
+		assertEquals("2024-02-29 13:45:07.123456", KeyCanonicalizer.canonical(micros, Kind.TIMESTAMP, 0));
+		assertEquals("2024-02-29 13:45:07.123456", KeyCanonicalizer.canonical("2024-02-29 13:45:07.123456000", Kind.TIMESTAMP, 0));
+		assertEquals("2024-02-29 13:45:07", KeyCanonicalizer.canonical("2024-02-29T13:45:07", Kind.TIMESTAMP, 0));
+	}
+}
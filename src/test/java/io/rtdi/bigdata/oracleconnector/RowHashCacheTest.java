@@ -0,0 +1,157 @@
+package io.rtdi.bigdata.oracleconnector;
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.avro.LogicalTypes;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.junit.Test;
+
+import io.rtdi.bigdata.connector.pipeline.foundation.avro.JexlGenericData.JexlRecord;
+import io.rtdi.bigdata.oracleconnector.KeyCanonicalizer.Kind;
+
+public class RowHashCacheTest {
+	private static final Schema SCHEMA = SchemaBuilder.record("ORDERS").fields()
+			.name("ID").type(LogicalTypes.decimal(10, 2).addToSchema(Schema.create(Schema.Type.BYTES))).noDefault()
+			.name("NAME").type(Schema.create(Schema.Type.STRING)).noDefault()
+			.endRecord();
+
+	private static RowHashCache createCache() {
+		return new RowHashCache(new KeyCanonicalizer(new int[] {0}, new Kind[] {Kind.NUMBER}, new int[] {2}), 0);
+	}
+
+	private static JexlRecord createRecord(Object id, String name) {
+		JexlRecord r = new JexlRecord(SCHEMA);
+		r.put(0, id);
+		r.put(1, name);
+		return r;
+	}
+
+	private static ByteBuffer decimal(String value) {
+		return ByteBuffer.wrap(new BigDecimal(value).setScale(2).unscaledValue().toByteArray());
+	}
+
+	/**
+	 * @return the text keys grouped by their home slot
+	 */
+	private static Map<Integer, List<String>> groupByHome(RowHashCache cache, int count) {
+		Map<Integer, List<String>> homes = new HashMap<>();
+		for (int i = 1; i <= count; i++) {
+			String id = String.valueOf(i);
+			int home = cache.home(cache.getKeyHash(createRecord(id, null)));
+			homes.computeIfAbsent(home, k -> new ArrayList<>()).add(id);
+		}
+		return homes;
+	}
+
+	private static List<String> findCollisions(Map<Integer, List<String>> homes, int count) {
+		for (List<String> ids : homes.values()) {
+			if (ids.size() >= count) {
+				return ids.subList(0, count);
+			}
+		}
+		fail("No " + count + " keys with the same home slot found");
+		return null;
+	}
+
+	@Test
+	public void testDecimalSeedMatchesTextDelta() {
+		RowHashCache cache = createCache();
+		// the initial load returns the decimal, the delta the PKLOG text
+		assertTrue(cache.put(createRecord(decimal("12.5"), "A")));
+		assertFalse(cache.put(createRecord("12.5", "A")));
+		assertFalse(cache.put(createRecord("12.50", "A")));
+		assertTrue(cache.put(createRecord("12.5", "B")));
+		assertEquals(1, cache.size());
+		cache.remove(createRecord(decimal("12.5"), null));
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testCollisions() {
+		RowHashCache cache = createCache();
+		List<String> ids = findCollisions(groupByHome(cache, 100000), 3);
+		for (String id : ids) {
+			assertTrue(id, cache.put(createRecord(id, "A")));
+		}
+		assertEquals(3, cache.size());
+		for (String id : ids) {
+			assertFalse(id, cache.put(createRecord(id, "A")));
+		}
+		assertTrue(cache.put(createRecord(ids.get(1), "B")));
+		assertFalse(cache.put(createRecord(ids.get(0), "A")));
+		assertFalse(cache.put(createRecord(ids.get(2), "A")));
+		assertEquals(3, cache.size());
+	}
+
+	@Test
+	public void testBackwardShiftRemove() {
+		RowHashCache cache = createCache();
+		Map<Integer, List<String>> homes = groupByHome(cache, 100000);
+		List<String> chain = null;
+		String displaced = null;
+		for (Map.Entry<Integer, List<String>> entry : homes.entrySet()) {
+			List<String> next = homes.get((entry.getKey() + 1) & (cache.getCapacity() - 1));
+			if (entry.getValue().size() >= 3 && next != null) {
+				chain = entry.getValue().subList(0, 3);
+				displaced = next.get(0);
+				break;
+			}
+		}
+		assertNotNull("No probe chain found", chain);
+		// the displaced key's home slot is taken by the chain, so it is stored behind it
+		for (String id : chain) {
+			cache.put(createRecord(id, "A"));
+		}
+		cache.put(createRecord(displaced, "A"));
+		assertEquals(4, cache.size());
+
+		cache.remove(createRecord(chain.get(0), null));
+		assertEquals(3, cache.size());
+		assertFalse(cache.put(createRecord(chain.get(1), "A")));
+		assertFalse(cache.put(createRecord(chain.get(2), "A")));
+		assertFalse(cache.put(createRecord(displaced, "A")));
+
+		cache.remove(createRecord(chain.get(2), null));
+		assertEquals(2, cache.size());
+		assertFalse(cache.put(createRecord(chain.get(1), "A")));
+		assertFalse(cache.put(createRecord(displaced, "A")));
+
+		cache.remove(createRecord(chain.get(0), null)); // not in the cache any longer
+		assertEquals(2, cache.size());
+		assertTrue(cache.put(createRecord(chain.get(0), "A")));
+		assertEquals(3, cache.size());
+	}
+
+	@Test
+	public void testResize() {
+		RowHashCache cache = createCache();
+		int initialcapacity = cache.getCapacity();
+		int count = initialcapacity * 2;
+		for (int i = 0; i < count; i++) {
+			assertTrue(cache.put(createRecord(decimal(String.valueOf(i)), "A")));
+		}
+		assertTrue(cache.getCapacity() > initialcapacity);
+		assertEquals(count, cache.size());
+		for (int i = 0; i < count; i++) {
+			assertFalse(String.valueOf(i), cache.put(createRecord(String.valueOf(i), "A")));
+		}
+		for (int i = 0; i < count; i += 2) {
+			cache.remove(createRecord(String.valueOf(i), null));
+		}
+		assertEquals(count / 2, cache.size());
+		for (int i = 1; i < count; i += 2) {
+			assertFalse(String.valueOf(i), cache.put(createRecord(decimal(String.valueOf(i)), "A")));
+		}
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertTrue(cache.put(createRecord("1", "A")));
+	}
+}